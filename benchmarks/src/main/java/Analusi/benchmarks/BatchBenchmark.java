@@ -0,0 +1,96 @@
+package Analusi.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import Analusi.BatchClosestPair;
+import Analusi.CP_1969;
+import Analusi.PointGenerator;
+import Analusi.PointStore;
+import Analusi.ClosestPair.Point;
+import Analusi.PointGenerator.Distribution;
+
+/**
+ * Many small independent point sets: BatchClosestPair on the packed sets next
+ * to one CP_1969 run per set. Every invocation solves SETS sets, so the
+ * scores are sets per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+public class BatchBenchmark {
+
+    // Every run of a benchmark sees the same points
+    private static final long SEED = 1969;
+    private static final int SETS = 1000;
+
+    @Param({"10", "100", "1000"})
+    public int setSize;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public Distribution distribution;
+
+    private double[] xs;
+    private double[] ys;
+    private int[] offsets;
+    private int[] pairs;
+    private double[] distances;
+    private List<List<Point>> sets;
+    private BatchClosestPair batch;
+
+    @Setup
+    public void setup() {
+        xs = new double[SETS * setSize];
+        ys = new double[SETS * setSize];
+        offsets = new int[SETS + 1];
+        sets = new ArrayList<>(SETS);
+        for (int set = 0; set < SETS; set++) {
+            offsets[set] = set * setSize;
+            PointStore store = new PointGenerator(SEED + set).generate(distribution, setSize);
+            List<Point> points = new ArrayList<>(setSize);
+            for (int i = 0; i < setSize; i++) {
+                xs[offsets[set] + i] = store.getX(i);
+                ys[offsets[set] + i] = store.getY(i);
+                points.add(store.getPoint(i));
+            }
+            sets.add(points);
+        }
+        offsets[SETS] = SETS * setSize;
+        pairs = new int[2 * SETS];
+        distances = new double[SETS];
+        batch = new BatchClosestPair();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SETS)
+    public double[] batch() {
+        batch.solve(xs, ys, offsets, pairs, distances);
+        return distances;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SETS)
+    public void perSet(Blackhole blackhole) {
+        for (List<Point> points : sets) {
+            blackhole.consume(new CP_1969().initializeDivideAndConquer(points));
+        }
+    }
+}
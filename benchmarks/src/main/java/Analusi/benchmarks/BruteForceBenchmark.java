@@ -0,0 +1,71 @@
+package Analusi.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Analusi.ClosestPair;
+import Analusi.DistanceKernel;
+import Analusi.PointGenerator;
+import Analusi.PointStore;
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+import Analusi.PointGenerator.Distribution;
+
+/**
+ * ClosestPair.bruteForce next to the brute force of the scalar and the default
+ * (vectorized, when available) DistanceKernel. They are O(n^2), so they only
+ * run up to 10^4 points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+public class BruteForceBenchmark {
+
+    // Every run of a benchmark sees the same points
+    private static final long SEED = 1969;
+
+    @Param({"1000", "3000", "10000"})
+    public int n;
+
+    @Param({"UNIFORM", "CLUSTERED", "LINE"})
+    public Distribution distribution;
+
+    private List<Point> points;
+    private PointStore store;
+
+    @Setup
+    public void setup() {
+        points = new PointGenerator(SEED).generatePoints(distribution, n);
+        store = PointStore.fromPoints(points);
+    }
+
+    @Benchmark
+    public Pair bruteForce() {
+        return ClosestPair.bruteForce(points);
+    }
+
+    @Benchmark
+    public Pair scalarKernel() {
+        return DistanceKernel.scalar().bruteForce(store);
+    }
+
+    @Benchmark
+    public Pair defaultKernel() {
+        return DistanceKernel.get().bruteForce(store);
+    }
+}
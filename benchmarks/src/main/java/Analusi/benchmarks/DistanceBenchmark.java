@@ -0,0 +1,68 @@
+package Analusi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Analusi.ClosestPair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * ClosestPair.distance and the custom hypot next to Math.hypot and the squared
+ * distance. The magnitude parameter picks coordinates that take the plain
+ * path of hypot or one of its rescaling branches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+public class DistanceBenchmark {
+
+    @Param({"1", "1e200", "1e-200"})
+    public double magnitude;
+
+    private Point point1;
+    private Point point2;
+    private double x;
+    private double y;
+
+    @Setup
+    public void setup() {
+        point1 = new Point(0.25 * magnitude, 0.75 * magnitude);
+        point2 = new Point(0.5 * magnitude, 0.125 * magnitude);
+        x = point2.getX() - point1.getX();
+        y = point2.getY() - point1.getY();
+    }
+
+    @Benchmark
+    public double distance() {
+        return ClosestPair.distance(point1, point2);
+    }
+
+    @Benchmark
+    public double distanceSquared() {
+        return ClosestPair.distanceSquared(point1, point2);
+    }
+
+    @Benchmark
+    public double hypot() {
+        return ClosestPair.hypot(x, y);
+    }
+
+    @Benchmark
+    public double mathHypot() {
+        return Math.hypot(x, y);
+    }
+}
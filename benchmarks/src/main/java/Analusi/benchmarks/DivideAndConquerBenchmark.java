@@ -0,0 +1,93 @@
+package Analusi.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Analusi.ClosestPair;
+import Analusi.PointGenerator;
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+import Analusi.PointGenerator.Distribution;
+
+/**
+ * The divide and conquer engines from 10^3 to 10^7 points. The presort (sortByX, sortByY) and the
+ * recursion on presorted lists (divideAndConquer) are measured separately from
+ * the whole initializeDivideAndConquer call. The sort benchmarks include an
+ * O(n) copy of the unsorted points, since sorting works in place.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class DivideAndConquerBenchmark {
+
+    // Every run of a benchmark sees the same points
+    private static final long SEED = 1969;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int n;
+
+    @Param({"UNIFORM", "CLUSTERED", "LINE"})
+    public Distribution distribution;
+
+    @Param({"CP_1969", "PRESORTED", "KD", "PLANNER", "BOTTOM_UP"})
+    public Engine engine;
+
+    private ClosestPair closestPair;
+    private List<Point> points;
+    private List<Point> pointsSortedByX;
+    private List<Point> pointsSortedByY;
+    private List<Point> scratch;
+
+    @Setup
+    public void setup() {
+        closestPair = engine.create();
+        points = new PointGenerator(SEED).generatePoints(distribution, n);
+        pointsSortedByX = new ArrayList<>(points);
+        closestPair.sortByX(pointsSortedByX);
+        pointsSortedByY = new ArrayList<>(points);
+        closestPair.sortByY(pointsSortedByY);
+        scratch = new ArrayList<>(n);
+    }
+
+    @Benchmark
+    public List<Point> sortByX() {
+        scratch.clear();
+        scratch.addAll(points);
+        closestPair.sortByX(scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public List<Point> sortByY() {
+        scratch.clear();
+        scratch.addAll(points);
+        closestPair.sortByY(scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public Pair divideAndConquer() {
+        return closestPair.divideAndConquer(pointsSortedByX, pointsSortedByY);
+    }
+
+    @Benchmark
+    public Pair initializeDivideAndConquer() {
+        return closestPair.initializeDivideAndConquer(points);
+    }
+}
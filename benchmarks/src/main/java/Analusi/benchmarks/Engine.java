@@ -0,0 +1,47 @@
+package Analusi.benchmarks;
+
+import Analusi.BottomUpClosestPair;
+import Analusi.CP_1969;
+import Analusi.ClosestPair;
+import Analusi.ClosestPairPlanner;
+import Analusi.KdClosestPair;
+import Analusi.PresortedClosestPair;
+
+/**
+ * The ClosestPair implementations the divide and conquer benchmarks compare.
+ */
+public enum Engine {
+
+    CP_1969 {
+        @Override
+        ClosestPair create() {
+            return new CP_1969();
+        }
+    },
+    PRESORTED {
+        @Override
+        ClosestPair create() {
+            return new PresortedClosestPair();
+        }
+    },
+    BOTTOM_UP {
+        @Override
+        ClosestPair create() {
+            return new BottomUpClosestPair();
+        }
+    },
+    KD {
+        @Override
+        ClosestPair create() {
+            return new KdClosestPair();
+        }
+    },
+    PLANNER {
+        @Override
+        ClosestPair create() {
+            return new ClosestPairPlanner();
+        }
+    };
+
+    abstract ClosestPair create();
+}
@@ -0,0 +1,255 @@
+package Analusi;
+
+import java.util.List;
+
+/**
+ * Divide and conquer closest pair over a PointStore.
+ *
+ * The points never leave their primitive coordinate arrays. The recursion works
+ * on index ranges of an int array that starts sorted by x. Every call returns
+ * its range re-ordered by y (merged from the two halves, as in merge sort), so
+ * the strip around the median can be scanned in y order without sorting it
+ * again. The best pair is kept as two indices and their squared distance, and
+ * all the comparisons (including the strip bounds) are done on squared
+ * distances; the square root is only taken once, when the final Pair is built.
+ *
+ * The leaves (up to leafSize points) and the strip scans copy the coordinates
+ * they examine into contiguous scratch arrays and search them with a
+ * DistanceKernel, which is vectorized when the vector API is available.
+ *
+ * The scratch arrays are kept between calls, so an instance should not be used
+ * by more than one thread at a time.
+ */
+public class ArrayClosestPair extends ClosestPair {
+
+    private double[] xs;
+    private double[] ys;
+    private int[] order = new int[0];
+    private int[] aux = new int[0];
+    private double[] scratchXs = new double[0];
+    private double[] scratchYs = new double[0];
+
+    private final DistanceKernel kernel;
+    private int leafSize = 16;
+
+    double bestDistanceSquared;
+    int bestFirst;
+    int bestSecond;
+
+    public ArrayClosestPair() {
+        this(DistanceKernel.get());
+    }
+
+    public ArrayClosestPair(DistanceKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * @param leafSize ranges of at most this many points are bruteforced, at
+     * least 2
+     */
+    public void setLeafSize(int leafSize) {
+        this.leafSize = Math.max(leafSize, 2);
+    }
+
+    /**
+     * Finds the closest pair of the points in the given store.
+     *
+     * @param store the points to be examined
+     * @return a Pair of the closest points, or null for less than two points
+     */
+    public Pair closestPair(PointStore store) {
+        int numPoints = store.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        ensureCapacity(numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            order[i] = i;
+        }
+        sortIndicesByX(store.xs, numPoints);
+        solve(store.xs, store.ys, numPoints);
+        return new Pair(store.getPoint(bestFirst), store.getPoint(bestSecond));
+    }
+
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        int numPoints = pointsSortedByX.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        PointStore store = PointStore.fromPoints(pointsSortedByX);
+        ensureCapacity(numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            order[i] = i;
+        }
+        solve(store.xs, store.ys, numPoints);
+        return new Pair(pointsSortedByX.get(bestFirst), pointsSortedByX.get(bestSecond));
+    }
+
+    /**
+     * Runs the recursion over the first numPoints entries of the order array,
+     * which must hold indices into xs and ys sorted by x, at least two. The
+     * result is left in bestFirst, bestSecond and bestDistanceSquared. Inputs
+     * whose squared distances overflow or underflow are solved again by
+     * PresortedClosestPair.solve, with hypot distances.
+     */
+    void solve(double[] xs, double[] ys, int numPoints) {
+        this.xs = xs;
+        this.ys = ys;
+        // Seeded with the first two points, so there is a result even if no
+        // squared distance is finite
+        bestDistanceSquared = Double.POSITIVE_INFINITY;
+        bestFirst = order[0];
+        bestSecond = order[1];
+        findClosestPair(0, numPoints);
+        if (!isExactSquare(bestDistanceSquared,
+                xs[bestFirst] == xs[bestSecond] && ys[bestFirst] == ys[bestSecond])) {
+            IndexPair pair = PresortedClosestPair.solve(xs, ys, order, numPoints);
+            bestFirst = pair.getFirst();
+            bestSecond = pair.getSecond();
+            double dx = xs[bestSecond] - xs[bestFirst];
+            double dy = ys[bestSecond] - ys[bestFirst];
+            bestDistanceSquared = dx * dx + dy * dy;
+        }
+        this.xs = null;
+        this.ys = null;
+    }
+
+    /**
+     * Same as solve, for the first count entries of indices, which must be
+     * indices into xs and ys sorted by x.
+     */
+    void solve(double[] xs, double[] ys, int[] indices, int count) {
+        ensureCapacity(count);
+        System.arraycopy(indices, 0, order, 0, count);
+        solve(xs, ys, count);
+    }
+
+    void ensureCapacity(int numPoints) {
+        if (order.length < numPoints) {
+            order = new int[numPoints];
+            aux = new int[numPoints];
+            scratchXs = new double[numPoints];
+            scratchYs = new double[numPoints];
+        }
+    }
+
+    private void findClosestPair(int lo, int hi) {
+        // Small ranges are bruteforced and then put in y order for the caller
+        if (hi - lo <= leafSize) {
+            int count = hi - lo;
+            for (int k = 0; k < count; k++) {
+                int point = order[lo + k];
+                scratchXs[k] = xs[point];
+                scratchYs[k] = ys[point];
+            }
+            for (int k = 0; k < count - 1; k++) {
+                int j = kernel.nearest(scratchXs, scratchYs, k + 1, count, scratchXs[k], scratchYs[k], bestDistanceSquared);
+                if (j >= 0) {
+                    check(order[lo + k], order[lo + j]);
+                }
+            }
+            insertionSortByY(lo, hi);
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        double xsplit = xs[order[mid]];
+        findClosestPair(lo, mid);
+        findClosestPair(mid, hi);
+        mergeByY(lo, mid, hi);
+
+        // Walk the range in y order and keep the points that are closer than
+        // the current best distance to the median in the strip. Every strip
+        // point only has to be compared with the strip points below it that
+        // are less than the best distance away in the y-axis, which are the
+        // last ones added to the strip.
+        int stripSize = 0;
+        for (int k = lo; k < hi; k++) {
+            int point = order[k];
+            double x = xs[point];
+            double y = ys[point];
+            double dx = x - xsplit;
+            if (dx * dx < bestDistanceSquared) {
+                int start = stripSize;
+                while (start > 0) {
+                    double dy = y - scratchYs[start - 1];
+                    if (dy * dy >= bestDistanceSquared) {
+                        break;
+                    }
+                    start--;
+                }
+                if (start < stripSize) {
+                    int j = kernel.nearest(scratchXs, scratchYs, start, stripSize, x, y, bestDistanceSquared);
+                    if (j >= 0) {
+                        check(aux[j], point);
+                    }
+                }
+                aux[stripSize] = point;
+                scratchXs[stripSize] = x;
+                scratchYs[stripSize] = y;
+                stripSize++;
+            }
+        }
+    }
+
+    private void check(int point1, int point2) {
+        double dx = xs[point2] - xs[point1];
+        double dy = ys[point2] - ys[point1];
+        double distance = dx * dx + dy * dy;
+        if (distance < bestDistanceSquared) {
+            bestDistanceSquared = distance;
+            bestFirst = point1;
+            bestSecond = point2;
+        }
+    }
+
+    private void insertionSortByY(int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            int point = order[i];
+            double y = ys[point];
+            int j = i - 1;
+            while (j >= lo && ys[order[j]] > y) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = point;
+        }
+    }
+
+    private void mergeByY(int lo, int mid, int hi) {
+        int i = lo;
+        int j = mid;
+        int k = lo;
+        while (i < mid && j < hi) {
+            if (ys[order[j]] < ys[order[i]]) {
+                aux[k++] = order[j++];
+            } else {
+                aux[k++] = order[i++];
+            }
+        }
+        while (i < mid) {
+            aux[k++] = order[i++];
+        }
+        while (j < hi) {
+            aux[k++] = order[j++];
+        }
+        System.arraycopy(aux, lo, order, lo, hi - lo);
+    }
+
+    /**
+     * Radix sorts the order array by the x coordinate.
+     */
+    private void sortIndicesByX(double[] keys, int numPoints) {
+        long[] bits = new long[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            bits[i] = RadixSort.sortableBits(keys[order[i]]);
+        }
+        RadixSort.sort(bits, order, numPoints, new long[numPoints], aux);
+    }
+}
@@ -0,0 +1,166 @@
+package Analusi;
+
+import java.util.stream.IntStream;
+
+/**
+ * Closest pairs of many small independent point sets at once.
+ *
+ * The sets are packed one after the other into two coordinate arrays; set s
+ * is made of the points at offsets[s] (inclusive) to offsets[s + 1]
+ * (exclusive). The sets are solved in parallel on the common fork/join pool,
+ * straight from the packed arrays: no Point, List or Pair is created. Every
+ * thread keeps its own scratch space (the index and key arrays of the sort and
+ * an ArrayClosestPair), which only grows for a larger set, so once the
+ * scratch fits, a set allocates nothing but the digit counts of the radix sort
+ * (which only sets of 1024 points or more use).
+ *
+ * Sets of up to bruteForceCutoff points are bruteforced with the
+ * DistanceKernel, larger ones are sorted by x and solved by ArrayClosestPair.
+ * So are the bruteforced sets whose best squared distance is not exact (see
+ * ClosestPair.isExactSquare), since ArrayClosestPair falls back to hypot
+ * distances for them.
+ * By default both cutoffs come from the calibration of ClosestPairPlanner.
+ *
+ * The results are packed as well: the two points of set s are pairs[2 * s]
+ * and pairs[2 * s + 1], as indices within the set (0 is the point at
+ * offsets[s]), and their distance is distances[s]. Sets of less than two
+ * points get -1, -1 and an infinite distance.
+ */
+public class BatchClosestPair {
+
+    private final int bruteForceCutoff;
+    private final int leafSize;
+    private final DistanceKernel kernel = DistanceKernel.get();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * The per thread scratch space.
+     */
+    private final class Scratch {
+        final ArrayClosestPair engine = new ArrayClosestPair(kernel);
+        int[] indices = new int[0];
+        long[] keys = new long[0];
+        long[] keyBuffer = new long[0];
+        int[] valueBuffer = new int[0];
+
+        Scratch() {
+            engine.setLeafSize(leafSize);
+        }
+
+        void ensureCapacity(int numPoints) {
+            if (indices.length < numPoints) {
+                indices = new int[numPoints];
+                keys = new long[numPoints];
+                keyBuffer = new long[numPoints];
+                valueBuffer = new int[numPoints];
+            }
+        }
+    }
+
+    /**
+     * Uses the cutoffs of ClosestPairPlanner.Calibration.host().
+     */
+    public BatchClosestPair() {
+        this(ClosestPairPlanner.Calibration.host().getBruteForceCutoff(),
+                ClosestPairPlanner.Calibration.host().getLeafSize());
+    }
+
+    /**
+     * @param bruteForceCutoff sets of at most this many points are
+     * bruteforced
+     * @param leafSize the leaf size of ArrayClosestPair for the other sets
+     */
+    public BatchClosestPair(int bruteForceCutoff, int leafSize) {
+        this.bruteForceCutoff = bruteForceCutoff;
+        this.leafSize = leafSize;
+    }
+
+    public int getBruteForceCutoff() {
+        return bruteForceCutoff;
+    }
+
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * Solves every set of a batch.
+     *
+     * @param xs the x coordinates of all the sets
+     * @param ys the y coordinates of all the sets
+     * @param offsets the first point of every set, followed by the end of the
+     * last set; non decreasing
+     * @param pairs receives the two points of every set, at least
+     * 2 * (offsets.length - 1) long
+     * @param distances receives the distance of every set, at least
+     * offsets.length - 1 long
+     */
+    public void solve(double[] xs, double[] ys, int[] offsets, int[] pairs, double[] distances) {
+        int numSets = offsets.length - 1;
+        if (numSets < 0) {
+            throw new IllegalArgumentException("offsets must hold at least the end of the batch");
+        }
+        if (pairs.length < 2 * numSets || distances.length < numSets) {
+            throw new IllegalArgumentException("The result arrays are too short for " + numSets + " sets");
+        }
+        for (int set = 0; set < numSets; set++) {
+            if (offsets[set] < 0 || offsets[set] > offsets[set + 1]) {
+                throw new IllegalArgumentException("offsets must be non negative and non decreasing, see set " + set);
+            }
+        }
+        if (numSets > 0 && (offsets[numSets] > xs.length || offsets[numSets] > ys.length)) {
+            throw new IllegalArgumentException("The sets end after the coordinates");
+        }
+        IntStream.range(0, numSets)
+                .parallel()
+                .forEach(set -> solve(xs, ys, offsets[set], offsets[set + 1], set, pairs, distances));
+    }
+
+    private void solve(double[] xs, double[] ys, int from, int to, int set, int[] pairs, double[] distances) {
+        int numPoints = to - from;
+        if (numPoints < 2) {
+            pairs[2 * set] = -1;
+            pairs[2 * set + 1] = -1;
+            distances[set] = Double.POSITIVE_INFINITY;
+            return;
+        }
+        // The first two points until a closer pair is found, so there is a
+        // result even if no squared distance is finite
+        int first = from;
+        int second = from + 1;
+        boolean solved = false;
+        if (numPoints <= bruteForceCutoff) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = from; i < to - 1; i++) {
+                int j = kernel.nearest(xs, ys, i + 1, to, xs[i], ys[i], best);
+                if (j >= 0) {
+                    double dx = xs[j] - xs[i];
+                    double dy = ys[j] - ys[i];
+                    best = dx * dx + dy * dy;
+                    first = i;
+                    second = j;
+                }
+            }
+            // Squares that overflowed or underflowed go to ArrayClosestPair,
+            // which falls back to hypot distances
+            solved = ClosestPair.isExactSquare(best, xs[first] == xs[second] && ys[first] == ys[second]);
+        }
+        if (!solved) {
+            Scratch local = scratch.get();
+            local.ensureCapacity(numPoints);
+            int[] indices = local.indices;
+            long[] keys = local.keys;
+            for (int i = 0; i < numPoints; i++) {
+                indices[i] = from + i;
+                keys[i] = RadixSort.sortableBits(xs[from + i]);
+            }
+            RadixSort.sort(keys, indices, numPoints, local.keyBuffer, local.valueBuffer);
+            local.engine.solve(xs, ys, indices, numPoints);
+            first = local.engine.bestFirst;
+            second = local.engine.bestSecond;
+        }
+        pairs[2 * set] = first - from;
+        pairs[2 * set + 1] = second - from;
+        distances[set] = ClosestPair.hypot(xs[second] - xs[first], ys[second] - ys[first]);
+    }
+}
@@ -0,0 +1,111 @@
+package Analusi;
+
+import java.util.List;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Closest pair between two point sets: the closest red-blue pair, where the
+ * first point comes from the red set and the second from the blue set.
+ *
+ * The smaller set is indexed in a hash grid with about one point per cell and
+ * the points of the larger set are streamed through it, each one asking for
+ * its nearest indexed point (CellGrid.nearest) closer than the best distance
+ * so far. Once a close pair is known most queries end after the first ring of
+ * cells, and queries that are farther than the best distance from all the
+ * indexed cells end right away, so the cost grows with the size of the larger
+ * set and only the smaller set has to be held in the grid.
+ *
+ * A query whose nearest point is too many cells away (CellGrid.TOO_FAR, as
+ * between clusters far apart) asks a KdTree over the smaller set instead,
+ * which is built on the first such query; so no query costs more than
+ * O(log n) expected beyond its bounded walk. Distances are ClosestPair.hypot
+ * distances, and both searches fall back to them where squares overflow or
+ * underflow.
+ */
+public class BichromaticClosestPair {
+
+    private BichromaticClosestPair() {
+    }
+
+    /**
+     * @param red the first set
+     * @param blue the second set
+     * @return the closest pair with point1 from red and point2 from blue, or
+     * null if a set is empty
+     */
+    public static Pair closestPair(List<Point> red, List<Point> blue) {
+        int[] closest = solve(PointStore.fromPoints(red), PointStore.fromPoints(blue));
+        if (closest == null) {
+            return null;
+        }
+        return new Pair(red.get(closest[0]), blue.get(closest[1]));
+    }
+
+    /**
+     * @param red the first set
+     * @param blue the second set
+     * @return the closest pair with point1 from red and point2 from blue, or
+     * null if a set is empty
+     */
+    public static Pair closestPair(PointStore red, PointStore blue) {
+        int[] closest = solve(red, blue);
+        if (closest == null) {
+            return null;
+        }
+        return new Pair(red.getPoint(closest[0]), blue.getPoint(closest[1]));
+    }
+
+    /**
+     * @return the index of the red point and of the blue point, or null
+     */
+    private static int[] solve(PointStore red, PointStore blue) {
+        if (red.size() == 0 || blue.size() == 0) {
+            return null;
+        }
+        boolean redIndexed = red.size() <= blue.size();
+        PointStore indexed = redIndexed ? red : blue;
+        PointStore streamed = redIndexed ? blue : red;
+
+        int numIndexed = indexed.size();
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numIndexed; i++) {
+            minX = Math.min(minX, indexed.xs[i]);
+            maxX = Math.max(maxX, indexed.xs[i]);
+            minY = Math.min(minY, indexed.ys[i]);
+            maxY = Math.max(maxY, indexed.ys[i]);
+        }
+        CellGrid grid = new CellGrid(numIndexed);
+        grid.reset(CellGrid.cellSizeFor(minX, minY, maxX, maxY, numIndexed), numIndexed);
+        for (int i = 0; i < numIndexed; i++) {
+            grid.insert(i, grid.cell(indexed.xs[i]), grid.cell(indexed.ys[i]));
+        }
+
+        KdTree tree = null;
+        double best = Double.POSITIVE_INFINITY;
+        int closestIndexed = 0;
+        int closestStreamed = 0;
+        for (int i = 0; i < streamed.size() && best > 0; i++) {
+            double x = streamed.xs[i];
+            double y = streamed.ys[i];
+            int nearest = grid.nearest(indexed.xs, indexed.ys, x, y, -1, best);
+            if (nearest == CellGrid.TOO_FAR) {
+                if (tree == null) {
+                    tree = new KdTree(PointCloud.fromStore(indexed));
+                }
+                int position = tree.nearest(x, y, -1, best);
+                nearest = position >= 0 ? tree.indices[position] : -1;
+            }
+            if (nearest >= 0) {
+                best = ClosestPair.hypot(indexed.xs[nearest] - x, indexed.ys[nearest] - y);
+                closestIndexed = nearest;
+                closestStreamed = i;
+            }
+        }
+        return redIndexed ? new int[]{closestIndexed, closestStreamed} : new int[]{closestStreamed, closestIndexed};
+    }
+}
@@ -0,0 +1,299 @@
+package Analusi;
+
+import java.util.List;
+
+/**
+ * Divide and conquer closest pair without recursion.
+ *
+ * The points are sorted by x once; the recursion of the top down versions is
+ * replaced by merge sort done bottom up. Blocks of LEAF_SIZE consecutive
+ * points are bruteforced and put in y order, then runs of width 16, 32, 64...
+ * are merged pairwise by y. When two runs are merged, the merged run is
+ * walked in y order for the points closer than the best distance so far to
+ * the line between the two runs (the x of the first point of the right run),
+ * and that strip is scanned like in the top down versions.
+ *
+ * The best distance is global: it is the best over all the runs solved so
+ * far, not only over the two runs that are merged, which only makes the strips
+ * narrower. The best pair is kept as two indices and a squared distance and
+ * the only square root is taken for the result. When that squared distance
+ * is not exact (see ClosestPair.isExactSquare) the points are solved again by
+ * PresortedClosestPair.solve, which compares hypot distances.
+ *
+ * All the buffers are fields that are only reallocated when a larger input
+ * comes, and the result is one Pair that every call updates (with
+ * Pair.update). Once the buffers fit, a run only allocates the digit counts of
+ * the radix sort and, for a PointStore, the two Points of the result, however
+ * many points there are. There is no recursion, so no input can overflow the
+ * stack. An instance should not be used by more than one thread at a time.
+ */
+public class BottomUpClosestPair extends ClosestPair {
+
+    static final int LEAF_SIZE = 16;
+
+    private final DistanceKernel kernel = DistanceKernel.get();
+    private final Pair closestpair = new Pair();
+
+    // The points sorted by x; positions below are positions in this order
+    private double[] sortedXs = new double[0];
+    private double[] sortedYs = new double[0];
+    // The original index of the point at every position
+    private int[] indices = new int[0];
+    // Runs of positions in y order, merged back and forth
+    private int[] runs = new int[0];
+    private int[] merged = new int[0];
+    // The radix sort of the x coordinates
+    private long[] keys = new long[0];
+    private long[] keyBuffer = new long[0];
+    private int[] valueBuffer = new int[0];
+    // The strip of the current merge
+    private double[] stripXs = new double[0];
+    private double[] stripYs = new double[0];
+    private int[] stripPositions = new int[0];
+
+    private double bestDistanceSquared;
+    private int bestFirst;
+    private int bestSecond;
+
+    /**
+     * Finds the closest pair of the points in the given store.
+     *
+     * @param store the points to be examined
+     * @return the result Pair of this instance, which the next call
+     * overwrites, or null for less than two points
+     */
+    public Pair closestPair(PointStore store) {
+        int numPoints = store.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        solve(store.xs, store.ys, numPoints);
+        closestpair.update(store.getPoint(firstIndex()), store.getPoint(secondIndex()), resultDistance());
+        return closestpair;
+    }
+
+    /**
+     * Solves the first numPoints points of the given coordinates, at least
+     * two. The result is read with firstIndex and secondIndex.
+     */
+    void solve(double[] xs, double[] ys, int numPoints) {
+        presort(xs, ys, numPoints);
+        solve(numPoints);
+    }
+
+    /**
+     * @return the index in the input of the first point of the last result
+     */
+    int firstIndex() {
+        return indices[bestFirst];
+    }
+
+    /**
+     * @return the index in the input of the second point of the last result
+     */
+    int secondIndex() {
+        return indices[bestSecond];
+    }
+
+    /**
+     * Sorts by x with the buffers of this instance, so unlike the default
+     * implementation this one copies no lists and does not sort by y.
+     *
+     * @return the result Pair of this instance, which the next call
+     * overwrites, or null for less than two points
+     */
+    @Override
+    public Pair initializeDivideAndConquer(List<Point> points) {
+        int numPoints = points.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        ensureCapacity(numPoints);
+        // The coordinates are staged in the strip buffers, which are not in
+        // use before the merges
+        for (int i = 0; i < numPoints; i++) {
+            Point point = points.get(i);
+            stripXs[i] = point.getX();
+            stripYs[i] = point.getY();
+        }
+        solve(stripXs, stripYs, numPoints);
+        closestpair.update(points.get(firstIndex()), points.get(secondIndex()), resultDistance());
+        return closestpair;
+    }
+
+    /**
+     * Only the first list is used.
+     *
+     * @return the result Pair of this instance, which the next call
+     * overwrites, or null for less than two points
+     */
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        int numPoints = pointsSortedByX.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        ensureCapacity(numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            Point point = pointsSortedByX.get(i);
+            sortedXs[i] = point.getX();
+            sortedYs[i] = point.getY();
+            indices[i] = i;
+        }
+        solve(numPoints);
+        closestpair.update(pointsSortedByX.get(bestFirst), pointsSortedByX.get(bestSecond), resultDistance());
+        return closestpair;
+    }
+
+    private void ensureCapacity(int numPoints) {
+        if (sortedXs.length < numPoints) {
+            sortedXs = new double[numPoints];
+            sortedYs = new double[numPoints];
+            indices = new int[numPoints];
+            runs = new int[numPoints];
+            merged = new int[numPoints];
+            keys = new long[numPoints];
+            keyBuffer = new long[numPoints];
+            valueBuffer = new int[numPoints];
+            stripXs = new double[numPoints];
+            stripYs = new double[numPoints];
+            stripPositions = new int[numPoints];
+        }
+    }
+
+    /**
+     * Fills sortedXs, sortedYs and indices with the points sorted by x.
+     */
+    private void presort(double[] xs, double[] ys, int numPoints) {
+        ensureCapacity(numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = RadixSort.sortableBits(xs[i]);
+            indices[i] = i;
+        }
+        RadixSort.sort(keys, indices, numPoints, keyBuffer, valueBuffer);
+        for (int position = 0; position < numPoints; position++) {
+            sortedXs[position] = xs[indices[position]];
+            sortedYs[position] = ys[indices[position]];
+        }
+    }
+
+    private double resultDistance() {
+        return hypot(sortedXs[bestSecond] - sortedXs[bestFirst], sortedYs[bestSecond] - sortedYs[bestFirst]);
+    }
+
+    /**
+     * Solves the first numPoints positions of sortedXs and sortedYs. The
+     * result is left in bestFirst and bestSecond, as positions.
+     */
+    private void solve(int numPoints) {
+        double[] xs = sortedXs;
+        double[] ys = sortedYs;
+        bestDistanceSquared = Double.POSITIVE_INFINITY;
+        bestFirst = 0;
+        bestSecond = 1;
+
+        // The leaves: bruteforced, then put in y order
+        int[] source = runs;
+        for (int lo = 0; lo < numPoints; lo += LEAF_SIZE) {
+            int hi = Math.min(lo + LEAF_SIZE, numPoints);
+            for (int i = lo; i < hi - 1; i++) {
+                int j = kernel.nearest(xs, ys, i + 1, hi, xs[i], ys[i], bestDistanceSquared);
+                if (j >= 0) {
+                    update(i, j);
+                }
+            }
+            for (int i = lo; i < hi; i++) {
+                int position = i;
+                int k = i - 1;
+                while (k >= lo && ys[source[k]] > ys[position]) {
+                    source[k + 1] = source[k];
+                    k--;
+                }
+                source[k + 1] = position;
+            }
+        }
+
+        int[] target = merged;
+        for (int width = LEAF_SIZE; width < numPoints; width *= 2) {
+            for (int lo = 0; lo < numPoints; lo += 2 * width) {
+                int mid = Math.min(lo + width, numPoints);
+                int hi = Math.min(lo + 2 * width, numPoints);
+                if (mid == hi) {
+                    System.arraycopy(source, lo, target, lo, hi - lo);
+                    continue;
+                }
+                // Merge the two runs by y, the left one first on ties
+                int left = lo;
+                int right = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (right >= hi || (left < mid && ys[source[left]] <= ys[source[right]])) {
+                        target[k] = source[left++];
+                    } else {
+                        target[k] = source[right++];
+                    }
+                }
+                scanStrip(target, lo, hi, xs[mid]);
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        // Keep the buffer that ended up holding the runs as the first one
+        runs = source;
+        merged = target;
+
+        if (!isExactSquare(bestDistanceSquared,
+                xs[bestFirst] == xs[bestSecond] && ys[bestFirst] == ys[bestSecond])) {
+            // The squares overflowed or underflowed: solve again with hypot
+            // distances, over the positions (merged is free again)
+            for (int position = 0; position < numPoints; position++) {
+                merged[position] = position;
+            }
+            IndexPair pair = PresortedClosestPair.solve(xs, ys, merged, numPoints);
+            bestFirst = pair.getFirst();
+            bestSecond = pair.getSecond();
+        }
+    }
+
+    /**
+     * Scans the points of a merged run that are closer than the best distance
+     * to the line x = xsplit, in y order.
+     */
+    private void scanStrip(int[] run, int lo, int hi, double xsplit) {
+        double[] xs = sortedXs;
+        double[] ys = sortedYs;
+        int count = 0;
+        for (int k = lo; k < hi; k++) {
+            int position = run[k];
+            double dx = xs[position] - xsplit;
+            if (dx * dx < bestDistanceSquared) {
+                stripXs[count] = xs[position];
+                stripYs[count] = ys[position];
+                stripPositions[count] = position;
+                count++;
+            }
+        }
+        for (int i = 0; i < count - 1; i++) {
+            double x = stripXs[i];
+            double y = stripYs[i];
+            for (int j = i + 1; j < count; j++) {
+                double dy = stripYs[j] - y;
+                if (dy * dy >= bestDistanceSquared) {
+                    break;
+                }
+                double dx = stripXs[j] - x;
+                if (dx * dx + dy * dy < bestDistanceSquared) {
+                    update(stripPositions[i], stripPositions[j]);
+                }
+            }
+        }
+    }
+
+    private void update(int first, int second) {
+        double dx = sortedXs[second] - sortedXs[first];
+        double dy = sortedYs[second] - sortedYs[first];
+        bestDistanceSquared = dx * dx + dy * dy;
+        bestFirst = first;
+        bestSecond = second;
+    }
+}
@@ -2,6 +2,8 @@ package Analusi;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Implementation Class.
@@ -28,6 +30,184 @@ import java.util.List;
  */
 public class CP_1969 extends ClosestPair {
 
+    /**
+     * Lists of points larger than this are split between the threads of the
+     * common fork/join pool. The default value keeps everything on the caller
+     * thread.
+     */
+    private int parallelThreshold = Integer.MAX_VALUE;
+
+    /**
+     * When set, the pairs passed around during the recursion hold the squared
+     * distance of their points and all the comparisons against dmin are done
+     * with squared values, so hypot only runs once for the returned Pair.
+     */
+    private boolean squaredDistances;
+
+    /**
+     * Thrown in squared distance mode when dmin is not an exact square (see
+     * ClosestPair.isExactSquare): the strips can not be cut with it, so the
+     * points are solved again with hypot distances.
+     */
+    private static final class InexactSquareException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        InexactSquareException() {
+            super(null, null, false, false);
+        }
+    }
+
+    public CP_1969() {
+    }
+
+    /**
+     * Creates an instance that solves the two halves of every list larger
+     * than parallelThreshold in parallel and also presorts in parallel.
+     *
+     * @param parallelThreshold the smallest list size that gets forked
+     */
+    public CP_1969(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public boolean isSquaredDistances() {
+        return squaredDistances;
+    }
+
+    /**
+     * Switches the squared distance mode on or off. Since the square root is
+     * monotonic the mode finds the same pair as the default one. Where the
+     * squares overflow or underflow the points are solved again in the default
+     * mode, so the result is the same for every input.
+     *
+     * @param squaredDistances true to compare squared distances
+     */
+    public void setSquaredDistances(boolean squaredDistances) {
+        this.squaredDistances = squaredDistances;
+    }
+
+    private boolean isParallel() {
+        return parallelThreshold != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Bruteforces the closest pair of a small list. In squared distance mode
+     * the distance of the returned pair is the squared distance.
+     */
+    private Pair solveByBruteForce(List<Point> points) {
+        ClosestPairMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.distances((long) points.size() * (points.size() - 1) / 2);
+        }
+        if (!squaredDistances) {
+            return bruteForce(points);
+        }
+        Pair pair = pairOf(points.get(0), points.get(1));
+        for (int i = 0; i < points.size() - 1; i++) {
+            Point point1 = points.get(i);
+            for (int j = i + 1; j < points.size(); j++) {
+                Point point2 = points.get(j);
+                double distance = distanceSquared(point1, point2);
+                if (distance < pair.getDistance()) {
+                    pair.update(point1, point2, distance);
+                }
+            }
+        }
+        return pair;
+    }
+
+    private Pair pairOf(Point point1, Point point2) {
+        ClosestPairMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.distances(1);
+        }
+        if (!squaredDistances) {
+            return new Pair(point1, point2);
+        }
+        Pair pair = new Pair();
+        pair.update(point1, point2, distanceSquared(point1, point2));
+        return pair;
+    }
+
+    /**
+     * Checks whether a coordinate difference is at most dmin, where dmin is
+     * the squared distance in squared distance mode.
+     */
+    private boolean withinDistance(double delta, double dmin) {
+        if (!squaredDistances) {
+            return delta <= dmin;
+        }
+        return delta <= 0 || delta * delta <= dmin;
+    }
+
+    /**
+     * Checks whether the closest pair of the two halves of a list is closer
+     * than any pair can be, which happens for equal points; the strip is not
+     * searched then, as it could hold every point of the list.
+     */
+    private boolean isClosest(Pair closestpair) {
+        requireExactSquare(closestpair);
+        return isEqual(closestpair);
+    }
+
+    /**
+     * In squared distance mode, throws InexactSquareException if the distance
+     * of the pair is not an exact square.
+     */
+    private void requireExactSquare(Pair pair) {
+        if (squaredDistances && !isExactSquare(pair.getDistance(), isEqual(pair))) {
+            throw new InexactSquareException();
+        }
+    }
+
+    private static boolean isEqual(Pair pair) {
+        return pair.getPoint1().getX() == pair.getPoint2().getX() && pair.getPoint1().getY() == pair.getPoint2().getY();
+    }
+
+    /**
+     * The fork/join version of findClosestPairbyX. The two halves of the list
+     * are independent until the strip around the median is examined, so the
+     * left half is forked while the current thread solves the right half and
+     * the results are merged exactly like findClosestPairbyX does. Lists not
+     * larger than parallelThreshold are solved sequentially.
+     */
+    private class ClosestPairTask extends RecursiveTask<Pair> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Point> points;
+        private final int depth;
+
+        ClosestPairTask(List<Point> points, int depth) {
+            this.points = points;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Pair compute() {
+            if (points.size() <= Math.max(parallelThreshold, 3)) {
+                return findClosestPairbyX(points, depth);
+            }
+            int split = (points.size() + points.size() % 2) / 2 - points.size() % 2;
+            double xsplit = points.get(split).getX();
+
+            ClosestPairTask left = new ClosestPairTask(points.subList(0, split), depth + 1);
+            left.fork();
+            Pair Rmin = new ClosestPairTask(points.subList(split, points.size()), depth + 1).compute();
+            Pair Lmin = left.join();
+            return mergeByX(points, xsplit, Lmin, Rmin, depth);
+        }
+    }
+
     /**
      * This is a recursive function that uses a modified divide and conquer
      * algorithm.
@@ -55,9 +235,10 @@ public class CP_1969 extends ClosestPair {
      * current closestpair and return the smallest distance.
      *
      * @param points list of points
+     * @param depth the recursion depth of the list, for the metrics
      * @return closest pair of points from the given list
      */
-    private Pair findClosestPairbyX(List<Point> points) {
+    private Pair findClosestPairbyX(List<Point> points, int depth) {
 
 //        sortByX(points);
         Pair closestpair = new Pair();
@@ -71,75 +252,103 @@ public class CP_1969 extends ClosestPair {
 
             // Recursively find the closest pair from the left and 
             // from the right of the meadian xsplit
-            Pair Lmin = findClosestPairbyX(points.subList(0, split));
-            Pair Rmin = findClosestPairbyX(points.subList(split, points.size()));
+            Pair Lmin = findClosestPairbyX(points.subList(0, split), depth + 1);
+            Pair Rmin = findClosestPairbyX(points.subList(split, points.size()), depth + 1);
+            return mergeByX(points, xsplit, Lmin, Rmin, depth);
+        }
+        if (metrics != null && points.size() >= 2) {
+            metrics.baseCase(depth);
+        }
+        // If the array is 3 points then just bruteforce for the closest pair
+        if (points.size() == 3) {
+            closestpair = solveByBruteForce(points);
+            return closestpair;
+        } // If the array is 2 points then just return the pair of the two points
+        // (since it is the closest pair in a group of one pair)
+        else if (points.size() == 2) {
+            return pairOf(points.get(0), points.get(1));
+        }
 
-            // find the closest pair between Lmin and Rmin
-            closestpair = Lmin;
-            if (Rmin.getDistance() < closestpair.getDistance()) {
-                closestpair = Rmin;
-            }
+        return closestpair;
+    }
 
-            // Use dmin, which is the closest pair from the left and the right
-            // side and get all the points that are at most that distance away
-            // (in the x-axis) from the median 
-            double dmin = closestpair.getDistance();
-            int startd = 0;
-            int endd = points.size();
-            int i = 0;
+    /**
+     * Merges the results of the left and the right half of an x-sorted list
+     * of points. The pair with the least distance of the two is the current
+     * closest pair and the points that are at most that distance away from
+     * the median xsplit (in the x-axis) are searched for a closer pair that
+     * has one point on each side.
+     *
+     * @param points list of points sorted by x
+     * @param xsplit the x coordinate of the median
+     * @param Lmin closest pair of the left half
+     * @param Rmin closest pair of the right half
+     * @param depth the recursion depth of the list, for the metrics
+     * @return closest pair of points from the given list
+     */
+    private Pair mergeByX(List<Point> points, double xsplit, Pair Lmin, Pair Rmin, int depth) {
+        // find the closest pair between Lmin and Rmin
+        Pair closestpair = Lmin;
+        if (Rmin.getDistance() < closestpair.getDistance()) {
+            closestpair = Rmin;
+        }
 
-            // Starting from left (in the sorted x-axis array find the first
-            // points that is dmin distance at most away from median on the
-            // left side of the x-axis
-            for (; i < points.size(); ++i) {
-                if (xsplit - points.get(i).getX() <= dmin) {
-                    startd = i;
-                    break;
-                }
-            }
+        // Use dmin, which is the closest pair from the left and the right
+        // side and get all the points that are at most that distance away
+        // (in the x-axis) from the median 
+        double dmin = closestpair.getDistance();
+        if (isClosest(closestpair)) {
+            return closestpair;
+        }
+        int startd = 0;
+        int endd = points.size();
+        int i = 0;
 
-            // Continuing from the previous variable i look for the furthest point
-            // from the median on the right side of the x-axis
-            for (; i < points.size(); ++i) {
-                if (points.get(i).getX() - xsplit > dmin) {
-                    endd = i;
-                    break;
-                }
+        // Starting from left (in the sorted x-axis array find the first
+        // points that is dmin distance at most away from median on the
+        // left side of the x-axis
+        for (; i < points.size(); ++i) {
+            if (withinDistance(xsplit - points.get(i).getX(), dmin)) {
+                startd = i;
+                break;
             }
+        }
 
-            // If there is only one point return the closest pair
-            // from the two separate sides
-            if (endd - startd == 1) {
-                return closestpair;
+        // Continuing from the previous variable i look for the furthest point
+        // from the median on the right side of the x-axis
+        for (; i < points.size(); ++i) {
+            if (!withinDistance(points.get(i).getX() - xsplit, dmin)) {
+                endd = i;
+                break;
             }
+        }
 
-            Pair LRmin = null;
-            // If there are 6 or less points then bruteforce it since it is possible
-            // that we won't benefit from splitting the points on the y-axis.
-            if (points.size() <= 6) {
-                LRmin = bruteForce(points);
-            } // If the points are more than six then split them by the y-axis and
-            // try to do the same divide and conquer as with did in this whole function
-            else {
-                LRmin = findClosestPairbyY(points.subList(startd, endd));
-            }
+        if (metrics != null) {
+            metrics.strip(depth, endd - startd);
+        }
 
-            // Check if it closest pair is closer that the closest pair 
-            // from the left and the right of the median
-            if (LRmin != null && LRmin.getDistance() < closestpair.getDistance()) {
-                closestpair = LRmin;
-            }
+        // If there is only one point return the closest pair
+        // from the two separate sides
+        if (endd - startd == 1) {
             return closestpair;
-        } // If the array is 3 points then just bruteforce for the closest pair
-        else if (points.size() == 3) {
-            closestpair = bruteForce(points);
-            return closestpair;
-        } // If the array is 2 points then just return the pair of the two points
-        // (since it is the closest pair in a group of one pair)
-        else if (points.size() == 2) {
-            return new Pair(points.get(0), points.get(1));
         }
 
+        Pair LRmin = null;
+        // If there are 6 or less points then bruteforce it since it is possible
+        // that we won't benefit from splitting the points on the y-axis.
+        if (points.size() <= 6) {
+            LRmin = solveByBruteForce(points);
+        } // If the points are more than six then split them by the y-axis and
+        // try to do the same divide and conquer as with did in this whole function
+        else {
+            LRmin = findClosestPairbyY(points.subList(startd, endd), depth + 1, endd - startd == points.size());
+        }
+
+        // Check if it closest pair is closer that the closest pair 
+        // from the left and the right of the median
+        if (LRmin != null && LRmin.getDistance() < closestpair.getDistance()) {
+            closestpair = LRmin;
+        }
         return closestpair;
     }
 
@@ -149,12 +358,18 @@ public class CP_1969 extends ClosestPair {
      * in the y-axis and closer in the x-axis
      *
      * @param points2 list of points
+     * @param depth the recursion depth of the list, for the metrics
+     * @param wholeStrip whether points2 is a strip that kept every point of
+     * its list: if it also keeps them all here, going back to the x-axis would
+     * split the same list again, so it is bruteforced. Both halves then have
+     * no pair closer than dmin within a box of about 2 dmin by 2 dmin, so
+     * there are only a few points
      * @return closest pair of points from the given list
      *
      *
      *
      */
-    private Pair findClosestPairbyY(List<Point> points2) {
+    private Pair findClosestPairbyY(List<Point> points2, int depth, boolean wholeStrip) {
         List<Point> points = new ArrayList<>(points2);
         sortByY(points);
         Pair closestpair = new Pair();
@@ -166,8 +381,8 @@ public class CP_1969 extends ClosestPair {
 
             // Recursively find the closest pair from the left and 
             // from the right of the meadian xsplit
-            Pair Dmin = findClosestPairbyY(points.subList(0, split));
-            Pair Umin = findClosestPairbyY(points.subList(split, points.size()));
+            Pair Dmin = findClosestPairbyY(points.subList(0, split), depth + 1, false);
+            Pair Umin = findClosestPairbyY(points.subList(split, points.size()), depth + 1, false);
 
             // find the closest pair between Lmin and Rmin
             closestpair = Dmin;
@@ -179,6 +394,9 @@ public class CP_1969 extends ClosestPair {
             // side and get all the points that are at most that distance away
             // (in the x-axis) from the median 
             double dmin = closestpair.getDistance();
+            if (isClosest(closestpair)) {
+                return closestpair;
+            }
             int startd = 0;
             int endd = points.size();
             int i = 0;
@@ -187,7 +405,7 @@ public class CP_1969 extends ClosestPair {
             // points that is dmin distance at most away from median on the
             // left side of the x-axis
             for (; i < points.size(); ++i) {
-                if (ysplit - points.get(i).getY() <= dmin) {
+                if (withinDistance(ysplit - points.get(i).getY(), dmin)) {
                     startd = i;
                     break;
                 }
@@ -196,12 +414,16 @@ public class CP_1969 extends ClosestPair {
             // Continuing from the previous variable i look for the furthest point
             // from the median on the right side of the x-axis
             for (; i < points.size(); ++i) {
-                if (points.get(i).getY() - ysplit > dmin) {
+                if (!withinDistance(points.get(i).getY() - ysplit, dmin)) {
                     endd = i;
                     break;
                 }
             }
 
+            if (metrics != null) {
+                metrics.strip(depth, endd - startd);
+            }
+
             // If there is only one point return the closest pair
             // from the two separate sides
             if (endd - startd == 1) {
@@ -212,13 +434,13 @@ public class CP_1969 extends ClosestPair {
             // If all the points are close to the median and the dmin does not
             // filter any points from stard to endd, there are probably few points
             // to calculate the minimum distance so just bruteforce it.
-            if (points.size() <= 6) {
-                UDmin = bruteForce(points);
+            if (points.size() <= 6 || (wholeStrip && endd - startd == points.size())) {
+                UDmin = solveByBruteForce(points);
             } // If there are points filtered, use recursive logic to find the 
             // closest pair.
             else {
 //                LRmin = bruteForce(points.subList(startd, endd));
-                UDmin = findClosestPairbyX(points.subList(startd, endd));
+                UDmin = findClosestPairbyX(points.subList(startd, endd), depth + 1);
             }
 
             // Check if it closest pair is closer that the closest pair 
@@ -228,14 +450,18 @@ public class CP_1969 extends ClosestPair {
             }
 
             return closestpair;
-        } // If the array is 3 points then just bruteforce for the closest pair
-        else if (points.size() == 3) {
-            closestpair = bruteForce(points);
+        }
+        if (metrics != null && points.size() >= 2) {
+            metrics.baseCase(depth);
+        }
+        // If the array is 3 points then just bruteforce for the closest pair
+        if (points.size() == 3) {
+            closestpair = solveByBruteForce(points);
             return closestpair;
         } // If the array is 2 points then just return the pair of the two points
         // (since it is the closest pair in a group of one pair)
         else if (points.size() == 2) {
-            return new Pair(points.get(0), points.get(1));
+            return pairOf(points.get(0), points.get(1));
         }
         return closestpair;
     }
@@ -253,8 +479,43 @@ public class CP_1969 extends ClosestPair {
 //            if (closestPair.getDistance()>distance(pointsSortedByY.get(i-1), pointsSortedByY.get(i)))
 //                closestPair = new Pair(pointsSortedByY.get(i-1), pointsSortedByY.get(i));
         
-        closestPair = findClosestPairbyX(pointsSortedByX);
-        return closestPair;
+        if (!squaredDistances) {
+            return solve(pointsSortedByX);
+        }
+        try {
+            closestPair = solve(pointsSortedByX);
+            requireExactSquare(closestPair);
+            // The only square root of the squared distance mode
+            return new Pair(closestPair.getPoint1(), closestPair.getPoint2());
+        } catch (InexactSquareException e) {
+            // A new instance in the default mode, so the fields of this one
+            // stay as they are for forked tasks of the failed run that may
+            // still be reading them
+            CP_1969 hypotMode = new CP_1969(parallelThreshold);
+            hypotMode.metrics = metrics;
+            return hypotMode.solve(pointsSortedByX);
+        }
+    }
+
+    private Pair solve(List<Point> pointsSortedByX) {
+        if (pointsSortedByX.size() > parallelThreshold) {
+            return ForkJoinPool.commonPool().invoke(new ClosestPairTask(pointsSortedByX, 0));
+        }
+        return findClosestPairbyX(pointsSortedByX, 0);
+    }
+
+    /**
+     * When the instance is parallel the two presorts of
+     * initializeDivideAndConquer run with the parallel radix sort.
+     */
+    @Override
+    protected void presort(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        if (!isParallel()) {
+            super.presort(pointsSortedByX, pointsSortedByY);
+            return;
+        }
+        RadixSort.parallelSortByX(pointsSortedByX);
+        RadixSort.parallelSortByY(pointsSortedByY);
     }
 
     /**
@@ -0,0 +1,344 @@
+package Analusi;
+
+import java.util.Arrays;
+
+/**
+ * A hash grid of square cells over point indices, kept in primitive arrays.
+ *
+ * Every non empty cell is an entry of an open addressing table keyed by the
+ * cell coordinates (cx, cy) and holds the head of a linked list of the points
+ * in the cell; the links live in the next array, indexed by point. The table
+ * grows with the number of occupied cells, so clearing it costs as much as the
+ * number of points that were inserted, not the size of the whole point set.
+ * Points can also be removed; a cell that becomes empty keeps its table entry
+ * (with an empty list) until the next reset, so the probe sequences of the
+ * other cells stay intact.
+ */
+class CellGrid {
+
+    private static final int EMPTY = -1;
+    private static final int EMPTIED = -2;
+    /**
+     * Returned by nearest when the nearest point is too many cells away.
+     */
+    static final int TOO_FAR = -3;
+    // The users of the grid keep the occupied cell indices within this, so
+    // the cells nearest walks to never wrap around onto occupied ones
+    static final double MAX_CELL = 0x1p62;
+
+    double cellSize;
+    int[] next;
+    private int[] prev;
+
+    private long[] cellXs;
+    private long[] cellYs;
+    private int[] heads;
+    private int mask;
+    private int cells;
+
+    // The range of cells that were occupied since the last reset
+    private long minCellX;
+    private long maxCellX;
+    private long minCellY;
+    private long maxCellY;
+
+    CellGrid(int numPoints) {
+        next = new int[Math.max(numPoints, 2)];
+        prev = new int[next.length];
+        allocateTable(16);
+    }
+
+    /**
+     * Empties the grid and sets the side of its cells.
+     *
+     * @param cellSize the side of every cell
+     * @param expectedPoints the number of points about to be inserted
+     */
+    void reset(double cellSize, int expectedPoints) {
+        this.cellSize = cellSize;
+        int capacity = Integer.highestOneBit(Math.max(expectedPoints, 8) * 2 - 1) << 1;
+        if (capacity > heads.length || capacity < heads.length >> 3) {
+            allocateTable(capacity);
+        } else {
+            Arrays.fill(heads, EMPTY);
+        }
+        cells = 0;
+        minCellX = Long.MAX_VALUE;
+        maxCellX = Long.MIN_VALUE;
+        minCellY = Long.MAX_VALUE;
+        maxCellY = Long.MIN_VALUE;
+    }
+
+    /**
+     * A cell size that gives about one point per cell for numPoints points
+     * spread over the given box, falling back to the longer side when the box
+     * is flat. The cells are large enough that the cell indices of the box
+     * stay below MAX_CELL / 2, and the sides of the box are halved before
+     * they are used, so they can not overflow.
+     */
+    static double cellSizeFor(double minX, double minY, double maxX, double maxY, int numPoints) {
+        double halfWidth = maxX / 2 - minX / 2;
+        double halfHeight = maxY / 2 - minY / 2;
+        double n = Math.max(numPoints, 1);
+        double cellSize = 2 * Math.sqrt(halfWidth) * Math.sqrt(halfHeight / n);
+        if (!(cellSize > 0)) {
+            // The points are on a line (or on a single point)
+            cellSize = 2 * Math.max(halfWidth, halfHeight) / n;
+        }
+        double extent = Math.max(Math.max(Math.abs(minX), Math.abs(maxX)), Math.max(Math.abs(minY), Math.abs(maxY)));
+        cellSize = Math.max(Math.min(cellSize, Double.MAX_VALUE), extent / (MAX_CELL / 2));
+        if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+            cellSize = 1;
+        }
+        return cellSize;
+    }
+
+    /**
+     * @return whether the cell indices of (x, y) are at most MAX_CELL
+     */
+    boolean fits(double x, double y) {
+        return Math.abs(x) / cellSize <= MAX_CELL && Math.abs(y) / cellSize <= MAX_CELL;
+    }
+
+    void ensurePointCapacity(int numPoints) {
+        if (next.length < numPoints) {
+            next = Arrays.copyOf(next, Math.max(numPoints, next.length + (next.length >> 1)));
+            prev = Arrays.copyOf(prev, next.length);
+        }
+    }
+
+    long cell(double coordinate) {
+        return (long) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Puts a point at the front of the list of cell (cx, cy).
+     */
+    void insert(int point, long cx, long cy) {
+        int slot = slot(cx, cy);
+        if (heads[slot] == EMPTY) {
+            if ((cells + 1) * 2 > heads.length) {
+                grow();
+                slot = slot(cx, cy);
+            }
+            cellXs[slot] = cx;
+            cellYs[slot] = cy;
+            cells++;
+            minCellX = Math.min(minCellX, cx);
+            maxCellX = Math.max(maxCellX, cx);
+            minCellY = Math.min(minCellY, cy);
+            maxCellY = Math.max(maxCellY, cy);
+        }
+        int head = heads[slot];
+        if (head >= 0) {
+            prev[head] = point;
+            next[point] = head;
+        } else {
+            next[point] = EMPTY;
+        }
+        prev[point] = EMPTY;
+        heads[slot] = point;
+    }
+
+    /**
+     * Unlinks a point from the list of cell (cx, cy), which must contain it.
+     */
+    void remove(int point, long cx, long cy) {
+        int before = prev[point];
+        int after = next[point];
+        if (before >= 0) {
+            next[before] = after;
+        } else {
+            int slot = slot(cx, cy);
+            heads[slot] = after >= 0 ? after : EMPTIED;
+        }
+        if (after >= 0) {
+            prev[after] = before;
+        }
+    }
+
+    /**
+     * @return the first point of cell (cx, cy), or a negative value if the
+     * cell is empty
+     */
+    int head(long cx, long cy) {
+        int slot = slot(cx, cy);
+        return heads[slot];
+    }
+
+    /**
+     * Finds the point of the grid nearest to (x, y) by searching rings of
+     * cells around the cell of (x, y), starting at the first ring that reaches
+     * an occupied cell. A point in ring r is at least (r - 1) cells away, so the
+     * search stops as soon as that is farther than the nearest point found so
+     * far (or the bound), or when the rings have covered all occupied cells.
+     *
+     * The search gives up and returns TOO_FAR before it visits more cells than
+     * the table has slots, which happens when the nearest point is many cells
+     * away (between clusters, or when the cells are much smaller than the gaps
+     * between the points); the caller then looks elsewhere, for example with
+     * scan. Distances are compared squared, and compared again as
+     * ClosestPair.hypot distances when the square of the result (or of the
+     * bound, if there is no result) overflows or underflows.
+     *
+     * @param xs the x coordinates of the points in the grid
+     * @param ys the y coordinates of the points in the grid
+     * @param exclude a point to be skipped (the query point itself), or -1
+     * @param bound only points closer than this distance count
+     * @return the nearest point, -1 if no point is closer than the bound, or
+     * TOO_FAR
+     */
+    int nearest(double[] xs, double[] ys, double x, double y, int exclude, double bound) {
+        if (cells == 0) {
+            return EMPTY;
+        }
+        int nearest = walk(xs, ys, x, y, exclude, bound, false);
+        if (nearest != TOO_FAR && !isExact(xs, ys, x, y, nearest, bound)) {
+            nearest = walk(xs, ys, x, y, exclude, bound, true);
+        }
+        return nearest;
+    }
+
+    /**
+     * Finds the point of the grid nearest to (x, y) by checking every point,
+     * in O(cells + points), with the same comparisons as nearest.
+     *
+     * @return the nearest point, or -1 if no point is closer than the bound
+     */
+    int scan(double[] xs, double[] ys, double x, double y, int exclude, double bound) {
+        int nearest = scan(xs, ys, x, y, exclude, bound, false);
+        if (!isExact(xs, ys, x, y, nearest, bound)) {
+            nearest = scan(xs, ys, x, y, exclude, bound, true);
+        }
+        return nearest;
+    }
+
+    private int walk(double[] xs, double[] ys, double x, double y, int exclude, double bound, boolean byHypot) {
+        long cx = cell(x);
+        long cy = cell(y);
+        long firstRing = Math.max(Math.max(difference(minCellX, cx), difference(cx, maxCellX)),
+                Math.max(difference(minCellY, cy), difference(cy, maxCellY)));
+        long lastRing = Math.max(Math.max(difference(cx, minCellX), difference(maxCellX, cx)),
+                Math.max(difference(cy, minCellY), difference(maxCellY, cy)));
+        double best = byHypot ? bound : bound * bound;
+        int nearest = EMPTY;
+        long visited = 0;
+        for (long r = Math.max(firstRing, 0); r <= lastRing; r++) {
+            double reach = (r - 1) * cellSize;
+            if (r > 1 && (byHypot ? reach : reach * reach) >= best) {
+                break;
+            }
+            if (r > heads.length || visited + Math.max(8 * r, 1) > heads.length) {
+                return TOO_FAR;
+            }
+            // Looping over offsets keeps the bounds from overflowing
+            for (long ox = -r; ox <= r; ox++) {
+                boolean side = ox == -r || ox == r;
+                long step = side ? 1 : Math.max(2 * r, 1);
+                for (long oy = -r; oy <= r; oy += step) {
+                    visited++;
+                    for (int other = head(cx + ox, cy + oy); other >= 0; other = next[other]) {
+                        if (other == exclude) {
+                            continue;
+                        }
+                        double distance = distance(xs[other] - x, ys[other] - y, byHypot);
+                        if (distance < best) {
+                            best = distance;
+                            nearest = other;
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private int scan(double[] xs, double[] ys, double x, double y, int exclude, double bound, boolean byHypot) {
+        double best = byHypot ? bound : bound * bound;
+        int nearest = EMPTY;
+        for (int slot = 0; slot < heads.length; slot++) {
+            for (int other = heads[slot]; other >= 0; other = next[other]) {
+                if (other == exclude) {
+                    continue;
+                }
+                double distance = distance(xs[other] - x, ys[other] - y, byHypot);
+                if (distance < best) {
+                    best = distance;
+                    nearest = other;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private static double distance(double dx, double dy, boolean byHypot) {
+        return byHypot ? ClosestPair.hypot(dx, dy) : dx * dx + dy * dy;
+    }
+
+    /**
+     * @return whether a search that compared squared distances can be
+     * trusted: the square of its result, or of the bound if it found none, is
+     * exact (see ClosestPair.isExactSquare)
+     */
+    private static boolean isExact(double[] xs, double[] ys, double x, double y, int nearest, double bound) {
+        if (nearest == EMPTY) {
+            return bound == 0 || ClosestPair.isExactSquare(bound * bound, false);
+        }
+        double dx = xs[nearest] - x;
+        double dy = ys[nearest] - y;
+        return ClosestPair.isExactSquare(dx * dx + dy * dy, dx == 0 && dy == 0);
+    }
+
+    /**
+     * @return a - b, saturated at the long range instead of wrapping around
+     */
+    private static long difference(long a, long b) {
+        long difference = a - b;
+        if (((a ^ b) & (a ^ difference)) < 0) {
+            return a < b ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return difference;
+    }
+
+    /**
+     * Finds the table slot of a cell: either the slot holding it or the empty
+     * slot where it would be inserted.
+     */
+    private int slot(long cx, long cy) {
+        int slot = hash(cx, cy) & mask;
+        while (heads[slot] != EMPTY && (cellXs[slot] != cx || cellYs[slot] != cy)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long cx, long cy) {
+        long h = cx * 0x9E3779B97F4A7C15L + cy * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void allocateTable(int capacity) {
+        cellXs = new long[capacity];
+        cellYs = new long[capacity];
+        heads = new int[capacity];
+        Arrays.fill(heads, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private void grow() {
+        long[] oldXs = cellXs;
+        long[] oldYs = cellYs;
+        int[] oldHeads = heads;
+        allocateTable(oldHeads.length << 1);
+        for (int i = 0; i < oldHeads.length; i++) {
+            if (oldHeads[i] != EMPTY) {
+                int slot = slot(oldXs[i], oldYs[i]);
+                cellXs[slot] = oldXs[i];
+                cellYs[slot] = oldYs[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package Analusi;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Random;
@@ -140,6 +138,38 @@ public abstract class ClosestPair {
     }
     
     
+    /**
+     * The distanceSquared() method computes the squared L2 distance between two
+     * points. It orders pairs the same way distance() does, without the square
+     * root, so it is meant for comparisons only.
+     * 
+     * @param p1 the first point
+     * @param p2 the second point
+     * @return the squared L2 distance between the two given points (x^2 + y^2)
+     */
+    public static double distanceSquared(Point p1, Point p2) {
+        double xdist = p2.x - p1.x;
+        double ydist = p2.y - p1.y;
+        return xdist * xdist + ydist * ydist;
+    }
+    
+    /**
+     * Whether the least squared distance found by an engine that compares
+     * dx * dx + dy * dy can be trusted. It can't when it is infinite (the
+     * squares of all the pairs overflowed) or when it is 0 or subnormal for
+     * two points that are not equal (squares of pairs this close underflow,
+     * so they may rank in the wrong order). Such inputs have to be solved
+     * with hypot distances, see PresortedClosestPair.solve.
+     *
+     * @param distanceSquared the least squared distance found
+     * @param equalPoints whether the two points of that distance are equal
+     * @return true if the pair of that distance is a closest pair
+     */
+    static boolean isExactSquare(double distanceSquared, boolean equalPoints) {
+        return distanceSquared != Double.POSITIVE_INFINITY
+                && (equalPoints || !(distanceSquared < Double.MIN_NORMAL));
+    }
+
     private static final double TWO_POW_450 = Double.longBitsToDouble(0x5C10000000000000L);
     private static final double TWO_POW_N450 = Double.longBitsToDouble(0x23D0000000000000L);
     private static final double TWO_POW_750 = Double.longBitsToDouble(0x6ED0000000000000L);
@@ -185,14 +215,10 @@ public abstract class ClosestPair {
      * @return a List of random points 
      */
     public static List<Point> generatePoints(int numPoints){
-        List<Point> points = new ArrayList<Point>();
-        Random r = new Random();
-
-        for (int i = 0; i < numPoints; i++) {
-            points.add(new Point(r.nextDouble(), r.nextDouble()));
-        }
-//        System.out.println("Generated " + numPoints + " random points");
-        return points;
+        // PointGenerator fills the points in parallel, see there for seeded
+        // point sets and other distributions
+        return new PointGenerator(new Random().nextLong())
+                .generatePoints(PointGenerator.Distribution.UNIFORM, numPoints);
     }
     
     /**
@@ -209,6 +235,19 @@ public abstract class ClosestPair {
         return bfClosestPair.equals(dcCLosestPair);
     }
 
+    /**
+     * Executes the D&C approach and certifies its result with
+     * ClosestPairVerifier, which unlike evaluateResult scales to millions of
+     * points. Ties are not a failure: any closest pair is accepted.
+     *
+     * @param points the set of points to be examined
+     * @return true if the result is a closest pair of the points
+     */
+    public boolean certifyResult(List<Point> points) {
+        Pair dcClosestPair = initializeDivideAndConquer(points);
+        return ClosestPairVerifier.certify(PointStore.fromPoints(points), dcClosestPair);
+    }
+
     /**
      * The straightforward solution is a O(n^2) algorithm (which we can call brute-force algorithm).
      * 
@@ -236,45 +275,89 @@ public abstract class ClosestPair {
         return pair;
     }
     
+    /**
+     * Same as bruteForce, but every comparison uses the squared distance and
+     * the square root is only taken once, for the returned Pair.
+     * 
+     * @param points the set of points to be examined
+     * @return a Pair of the closest points
+     */
+    public static Pair bruteForceSquared(List<Point> points) {
+        int numPoints = points.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        Point closest1 = points.get(0);
+        Point closest2 = points.get(1);
+        double closestDistance = distanceSquared(closest1, closest2);
+        for (int i = 0; i < numPoints - 1; i++) {
+            Point point1 = points.get(i);
+            for (int j = i + 1; j < numPoints; j++) {
+                Point point2 = points.get(j);
+                double distance = distanceSquared(point1, point2);
+                if (distance < closestDistance) {
+                    closest1 = point1;
+                    closest2 = point2;
+                    closestDistance = distance;
+                }
+            }
+        }
+        return new Pair(closest1, closest2);
+    }
+    
     /**
      * The method sortByX sorts the points according to their x coordinate. 
+     * It uses a radix sort over the bits of the coordinates (see RadixSort),
+     * which keeps points with equal coordinates in their original order.
      *  
      * @param points the set of points to be sorted
      */
     public void sortByX(List<Point> points) {
-        
-        Collections.sort(points, new Comparator<Point>() {
-            @Override
-            public int compare(Point point1, Point point2) {
-                if (point1.getX() < point2.getX()) {
-                    return -1;
-                }
-                if (point1.getX() > point2.getX()) {
-                    return 1;
-                }
-                return 0;
-            }
-        });
+        RadixSort.sortByX(points);
     }
     
     /**
      * The method sortByY sorts the points according to their y coordinate. 
+     * It uses a radix sort over the bits of the coordinates (see RadixSort),
+     * which keeps points with equal coordinates in their original order.
      * 
      * @param points the set of points to be sorted
      */
     public void sortByY(List<Point> points) {
-        Collections.sort(points, new Comparator<Point>() {
-            @Override
-            public int compare(Point point1, Point point2) {
-                if (point1.getY() < point2.getY()) {
-                    return -1;
-                }
-                if (point1.getY() > point2.getY()) {
-                    return 1;
-                }
-                return 0;
-            }
-        });
+        RadixSort.sortByY(points);
+    }
+    
+    /**
+     * The metrics of the runs of this instance, or null (the default) when
+     * nothing is recorded.
+     */
+    protected ClosestPairMetrics metrics;
+
+    public ClosestPairMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Attaches metrics to this instance: initializeDivideAndConquer records the
+     * time of the sorts and of the recursion, the engines that support it
+     * record the work of the recursion, and every run emits a JFR event.
+     * 
+     * @param metrics the metrics to add up to, or null to record nothing
+     */
+    public void setMetrics(ClosestPairMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Sorts the two copies of the points initializeDivideAndConquer passes to
+     * divideAndConquer.
+     * 
+     * @param pointsSortedByX the points to be sorted by x
+     * @param pointsSortedByY the points to be sorted by y
+     */
+    protected void presort(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        sortByX(pointsSortedByX);
+        sortByY(pointsSortedByY);
     }
     
     /**
@@ -284,11 +367,41 @@ public abstract class ClosestPair {
      * @return a Pair of the closest points
      */
     public Pair initializeDivideAndConquer(List<Point> points) {
+        ClosestPairMetrics metrics = this.metrics;
+        if (metrics == null) {
+            List<Point> pointsSortedByX = new ArrayList<>(points);
+            List<Point> pointsSortedByY = new ArrayList<Point>(points);
+            presort(pointsSortedByX, pointsSortedByY);
+            return divideAndConquer(pointsSortedByX, pointsSortedByY);
+        }
+
+        ClosestPairEvent event = new ClosestPairEvent();
+        ClosestPairMetrics.Snapshot before = event.isEnabled() ? metrics.snapshot() : null;
+        event.begin();
+        long start = System.nanoTime();
         List<Point> pointsSortedByX = new ArrayList<>(points);
-        sortByX(pointsSortedByX);
         List<Point> pointsSortedByY = new ArrayList<Point>(points);
-        sortByY(pointsSortedByY);
-        return divideAndConquer(pointsSortedByX, pointsSortedByY);
+        presort(pointsSortedByX, pointsSortedByY);
+        long sorted = System.nanoTime();
+        Pair closestPair = divideAndConquer(pointsSortedByX, pointsSortedByY);
+        long solved = System.nanoTime();
+        metrics.run(points.size(), sorted - start, solved - sorted);
+
+        event.end();
+        if (before != null && event.shouldCommit()) {
+            ClosestPairMetrics.Snapshot run = metrics.snapshot().since(before);
+            event.engine = getClass().getSimpleName();
+            event.points = points.size();
+            event.sortTime = sorted - start;
+            event.solveTime = solved - sorted;
+            event.distanceEvaluations = run.getDistanceEvaluations();
+            event.baseCases = run.getBaseCases();
+            event.maxDepth = run.getMaxDepth();
+            event.strips = run.getStrips();
+            event.stripPoints = run.getStripPoints();
+            event.commit();
+        }
+        return closestPair;
     }
     
     /**
@@ -0,0 +1,53 @@
+package Analusi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR event of one closest pair run of an engine with metrics (see
+ * ClosestPairMetrics). The counts are the ones of the run alone, unless
+ * the metrics are shared with runs on other threads at the same time. JFR only
+ * records it when the event is enabled, e.g. with the default settings of
+ * -XX:StartFlightRecording.
+ */
+@Name("Analusi.ClosestPair")
+@Label("Closest Pair")
+@Category("Closest Pair")
+@Description("A closest pair run with its sort and solve time and the work of its recursion")
+@StackTrace(false)
+class ClosestPairEvent extends Event {
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Points")
+    int points;
+
+    @Label("Sort Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long sortTime;
+
+    @Label("Solve Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long solveTime;
+
+    @Label("Distance Evaluations")
+    long distanceEvaluations;
+
+    @Label("Base Cases")
+    long baseCases;
+
+    @Label("Max Depth")
+    int maxDepth;
+
+    @Label("Strips")
+    long strips;
+
+    @Label("Strip Points")
+    long stripPoints;
+}
@@ -0,0 +1,245 @@
+package Analusi;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of where the time of closest pair runs goes: distance evaluations,
+ * recursion depth, base cases, the sizes of the strips per recursion level and
+ * the wall time of the presorts and of the recursion.
+ *
+ * An instance is attached to an engine with ClosestPair.setMetrics and keeps
+ * adding up over the runs of the engine (and of any other engine it is
+ * attached to) until reset. Engines without metrics only pay a null check per
+ * recorded event. The counters can be updated from many threads, so they are
+ * safe to use with the parallel CP_1969. Every run of an engine with metrics
+ * also emits a ClosestPairEvent, which shows up in JFR recordings.
+ */
+public class ClosestPairMetrics {
+
+    /**
+     * Base cases and strips deeper than this are counted in the last level.
+     */
+    public static final int MAX_LEVELS = 64;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder points = new LongAdder();
+    private final LongAdder distanceEvaluations = new LongAdder();
+    private final LongAdder sortNanos = new LongAdder();
+    private final LongAdder solveNanos = new LongAdder();
+    private final AtomicLongArray baseCases = new AtomicLongArray(MAX_LEVELS);
+    private final AtomicLongArray strips = new AtomicLongArray(MAX_LEVELS);
+    private final AtomicLongArray stripPoints = new AtomicLongArray(MAX_LEVELS);
+
+    /**
+     * Records count distance evaluations.
+     */
+    public void distances(long count) {
+        distanceEvaluations.add(count);
+    }
+
+    /**
+     * Records a base case (a list that is solved without splitting it) at the
+     * given recursion depth, the top level being depth 0.
+     */
+    public void baseCase(int depth) {
+        baseCases.incrementAndGet(Math.min(depth, MAX_LEVELS - 1));
+    }
+
+    /**
+     * Records a strip around a median at the given recursion depth.
+     *
+     * @param depth the depth of the list that was split
+     * @param size the number of points in the strip
+     */
+    public void strip(int depth, int size) {
+        int level = Math.min(depth, MAX_LEVELS - 1);
+        strips.incrementAndGet(level);
+        stripPoints.addAndGet(level, size);
+    }
+
+    /**
+     * Records a whole run, after its sorts and its recursion are done.
+     */
+    void run(int numPoints, long sortTime, long solveTime) {
+        runs.increment();
+        points.add(numPoints);
+        sortNanos.add(sortTime);
+        solveNanos.add(solveTime);
+    }
+
+    /**
+     * Clears all the counters. Updates that run concurrently with reset may
+     * or may not be cleared.
+     */
+    public void reset() {
+        runs.reset();
+        points.reset();
+        distanceEvaluations.reset();
+        sortNanos.reset();
+        solveNanos.reset();
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            baseCases.set(level, 0);
+            strips.set(level, 0);
+            stripPoints.set(level, 0);
+        }
+    }
+
+    /**
+     * @return the current values of the counters. The values are read one by
+     * one, so a snapshot taken during a run may be a little inconsistent.
+     */
+    public Snapshot snapshot() {
+        long[] baseCaseCounts = new long[MAX_LEVELS];
+        long[] stripCounts = new long[MAX_LEVELS];
+        long[] stripSizes = new long[MAX_LEVELS];
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            baseCaseCounts[level] = baseCases.get(level);
+            stripCounts[level] = strips.get(level);
+            stripSizes[level] = stripPoints.get(level);
+        }
+        return new Snapshot(runs.sum(), points.sum(), distanceEvaluations.sum(), sortNanos.sum(), solveNanos.sum(),
+                baseCaseCounts, stripCounts, stripSizes);
+    }
+
+    /**
+     * The values of the counters at some point in time. The per level values
+     * have MAX_LEVELS entries.
+     */
+    public static class Snapshot {
+
+        private final long runs;
+        private final long points;
+        private final long distanceEvaluations;
+        private final long sortNanos;
+        private final long solveNanos;
+        private final long[] baseCases;
+        private final long[] strips;
+        private final long[] stripPoints;
+
+        Snapshot(long runs, long points, long distanceEvaluations, long sortNanos, long solveNanos,
+                long[] baseCases, long[] strips, long[] stripPoints) {
+            this.runs = runs;
+            this.points = points;
+            this.distanceEvaluations = distanceEvaluations;
+            this.sortNanos = sortNanos;
+            this.solveNanos = solveNanos;
+            this.baseCases = baseCases;
+            this.strips = strips;
+            this.stripPoints = stripPoints;
+        }
+
+        /**
+         * @param earlier a snapshot of the same metrics taken before this one
+         * @return what was recorded between the two snapshots
+         */
+        public Snapshot since(Snapshot earlier) {
+            long[] baseCaseCounts = new long[MAX_LEVELS];
+            long[] stripCounts = new long[MAX_LEVELS];
+            long[] stripSizes = new long[MAX_LEVELS];
+            for (int level = 0; level < MAX_LEVELS; level++) {
+                baseCaseCounts[level] = baseCases[level] - earlier.baseCases[level];
+                stripCounts[level] = strips[level] - earlier.strips[level];
+                stripSizes[level] = stripPoints[level] - earlier.stripPoints[level];
+            }
+            return new Snapshot(runs - earlier.runs, points - earlier.points,
+                    distanceEvaluations - earlier.distanceEvaluations, sortNanos - earlier.sortNanos,
+                    solveNanos - earlier.solveNanos, baseCaseCounts, stripCounts, stripSizes);
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        /**
+         * @return the number of input points over all the runs
+         */
+        public long getPoints() {
+            return points;
+        }
+
+        public long getDistanceEvaluations() {
+            return distanceEvaluations;
+        }
+
+        public long getSortNanos() {
+            return sortNanos;
+        }
+
+        public long getSolveNanos() {
+            return solveNanos;
+        }
+
+        /**
+         * @return the number of base cases at a recursion level
+         */
+        public long getBaseCases(int level) {
+            return baseCases[level];
+        }
+
+        public long getBaseCases() {
+            return sum(baseCases);
+        }
+
+        /**
+         * @return the deepest level that had a base case, or -1 if none did
+         */
+        public int getMaxDepth() {
+            return lastLevel(baseCases);
+        }
+
+        /**
+         * @return the number of strips at a recursion level
+         */
+        public long getStrips(int level) {
+            return strips[level];
+        }
+
+        public long getStrips() {
+            return sum(strips);
+        }
+
+        /**
+         * @return the number of points in all the strips of a recursion level
+         */
+        public long getStripPoints(int level) {
+            return stripPoints[level];
+        }
+
+        public long getStripPoints() {
+            return sum(stripPoints);
+        }
+
+        private static long sum(long[] values) {
+            long total = 0;
+            for (long value : values) {
+                total += value;
+            }
+            return total;
+        }
+
+        private static int lastLevel(long[] values) {
+            int level = values.length - 1;
+            while (level >= 0 && values[level] == 0) {
+                level--;
+            }
+            return level;
+        }
+
+        @Override
+        public String toString() {
+            int levels = Math.max(lastLevel(strips), lastLevel(baseCases)) + 1;
+            StringBuilder builder = new StringBuilder();
+            builder.append("runs=").append(runs)
+                    .append(" points=").append(points)
+                    .append(" distances=").append(distanceEvaluations)
+                    .append(" sortMs=").append(sortNanos / 1_000_000)
+                    .append(" solveMs=").append(solveNanos / 1_000_000)
+                    .append(" baseCases=").append(Arrays.toString(Arrays.copyOf(baseCases, levels)))
+                    .append(" strips=").append(Arrays.toString(Arrays.copyOf(strips, levels)))
+                    .append(" stripPoints=").append(Arrays.toString(Arrays.copyOf(stripPoints, levels)));
+            return builder.toString();
+        }
+    }
+}
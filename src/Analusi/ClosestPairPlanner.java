@@ -0,0 +1,475 @@
+package Analusi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Picks the engine for every input instead of leaving the choice to the
+ * caller.
+ *
+ * plan() looks at the input: its size, its bounding box, and a random sample
+ * of up to SAMPLE_SIZE points (one in 16 for smaller inputs), which gives the
+ * duplicate points in the sample and how clustered the points are (the share
+ * of the cells of a grid over the bounding box the sample leaves empty, beyond
+ * what a uniform sample would). Then:
+ *
+ * - inputs whose coordinate range is too large or too small for squared
+ *   distances (see ClosestPair.hypot), or whose sample has a closest pair
+ *   whose squared distance underflows, go to PresortedClosestPair, which
+ *   compares real distances
+ * - inputs up to the brute force cutoff are bruteforced with the default
+ *   DistanceKernel, and solved again by PresortedClosestPair if the squared
+ *   distance of the result underflows
+ * - inputs with duplicates go to GridClosestPair, which stops at the first
+ *   pair at distance 0 it meets
+ * - the rest go to ArrayClosestPair with the calibrated leaf size, or to
+ *   GridClosestPair if the calibration found it faster on uniform points and
+ *   the input is not clustered
+ *
+ * The cutoffs come from a Calibration. The default one is measured once per
+ * JVM, the first time it is needed, by timing the engines on small uniform
+ * inputs on this CPU (it takes a fraction of a second); a fixed one can be
+ * passed to the constructor for reproducible plans.
+ *
+ * The engines keep scratch arrays, so an instance should not be used by more
+ * than one thread at a time.
+ */
+public class ClosestPairPlanner extends ClosestPair {
+
+    public static final int SAMPLE_SIZE = 4096;
+    // Smaller inputs are sampled with one point out of this many, so the plan
+    // stays cheap next to the solve
+    private static final int SAMPLE_FRACTION = 16;
+
+    // Coordinate ranges outside these bounds can overflow or underflow the
+    // squared distances
+    private static final double MAX_SQUARED_RANGE = 1e150;
+    private static final double MIN_SQUARED_RANGE = 1e-150;
+    // The seed of the shuffles of GridClosestPair, so plans and calibrations
+    // are reproducible
+    private static final long GRID_SEED = 1969;
+
+    /**
+     * The engines the planner dispatches to.
+     */
+    public enum Engine {
+        BRUTE_FORCE, DIVIDE_AND_CONQUER, GRID, PRESORTED
+    }
+
+    private final Calibration calibration;
+    private final ArrayClosestPair divideAndConquer;
+    private final GridClosestPair grid = new GridClosestPair(GRID_SEED);
+    private final PresortedClosestPair presorted = new PresortedClosestPair();
+
+    public ClosestPairPlanner() {
+        this(Calibration.host());
+    }
+
+    public ClosestPairPlanner(Calibration calibration) {
+        this.calibration = calibration;
+        divideAndConquer = new ArrayClosestPair();
+        divideAndConquer.setLeafSize(calibration.getLeafSize());
+    }
+
+    public Calibration getCalibration() {
+        return calibration;
+    }
+
+    /**
+     * Finds the closest pair of the points in the given store with the engine
+     * plan() picks for it.
+     *
+     * @param store the points to be examined
+     * @return a Pair of the closest points, or null for less than two points
+     */
+    public Pair closestPair(PointStore store) {
+        if (store.size() < 2) {
+            return null;
+        }
+        switch (plan(store).getEngine()) {
+            case BRUTE_FORCE:
+                Pair pair = DistanceKernel.get().bruteForce(store);
+                // The kernel compares squares; a closest square that
+                // underflowed may hide a closer pair
+                if (!isExactSquare(pair.getPoint1(), pair.getPoint2())) {
+                    return presorted(store);
+                }
+                return pair;
+            case GRID:
+                return grid.closestPair(store);
+            case PRESORTED:
+                return presorted(store);
+            default:
+                return divideAndConquer.closestPair(store);
+        }
+    }
+
+    private Pair presorted(PointStore store) {
+        List<Point> points = new ArrayList<>(store.size());
+        for (int i = 0; i < store.size(); i++) {
+            points.add(store.getPoint(i));
+        }
+        return presorted.initializeDivideAndConquer(points);
+    }
+
+    private static boolean isExactSquare(Point point1, Point point2) {
+        double dx = point2.getX() - point1.getX();
+        double dy = point2.getY() - point1.getY();
+        return isExactSquare(dx * dx + dy * dy, dx == 0 && dy == 0);
+    }
+
+    /**
+     * Plans from the points themselves, so unlike the default implementation
+     * this one does not presort. The returned Pair holds new Point objects
+     * with the coordinates of the closest points.
+     */
+    @Override
+    public Pair initializeDivideAndConquer(List<Point> points) {
+        return closestPair(PointStore.fromPoints(points));
+    }
+
+    /**
+     * Only the first list is used, its order does not matter.
+     */
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        return closestPair(PointStore.fromPoints(pointsSortedByX));
+    }
+
+    /**
+     * Looks at the input and picks the engine for it.
+     *
+     * @param store the points to be examined
+     * @return the plan, with the features it was based on
+     */
+    public Plan plan(PointStore store) {
+        int numPoints = store.size();
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numPoints; i++) {
+            minX = Math.min(minX, store.xs[i]);
+            maxX = Math.max(maxX, store.xs[i]);
+            minY = Math.min(minY, store.ys[i]);
+            maxY = Math.max(maxY, store.ys[i]);
+        }
+        double width = maxX - minX;
+        double height = maxY - minY;
+        double range = Math.max(width, height);
+        if (range > MAX_SQUARED_RANGE || (range > 0 && range < MIN_SQUARED_RANGE)) {
+            return new Plan(Engine.PRESORTED, numPoints, width, height, 0, 0, 0);
+        }
+        if (numPoints <= calibration.getBruteForceCutoff()) {
+            return new Plan(Engine.BRUTE_FORCE, numPoints, width, height, 0, 0, 0);
+        }
+
+        // One random point out of every numPoints / sampleSize, so no point is
+        // picked twice; the seed is fixed so a plan is reproducible
+        int sampleSize = Math.min(SAMPLE_SIZE, numPoints / SAMPLE_FRACTION);
+        double[] xs = new double[sampleSize];
+        double[] ys = new double[sampleSize];
+        Random random = new Random(numPoints);
+        for (int i = 0; i < sampleSize; i++) {
+            int from = (int) ((long) i * numPoints / sampleSize);
+            int to = (int) ((long) (i + 1) * numPoints / sampleSize);
+            int point = from + random.nextInt(to - from);
+            xs[i] = store.xs[point];
+            ys[i] = store.ys[point];
+        }
+        int duplicates = countDuplicates(xs, ys, sampleSize);
+        double clustering = clustering(xs, ys, sampleSize, minX, minY, width, height);
+
+        Engine engine;
+        if (!sampleSquaresExact(xs, ys, sampleSize)) {
+            engine = Engine.PRESORTED;
+        } else if (duplicates > 0) {
+            engine = Engine.GRID;
+        } else if (calibration.isGridFaster() && clustering < 0.5) {
+            engine = Engine.GRID;
+        } else {
+            engine = Engine.DIVIDE_AND_CONQUER;
+        }
+        return new Plan(engine, numPoints, width, height, sampleSize, duplicates, clustering);
+    }
+
+    /**
+     * The closest pair of the input is at most as far apart as that of the
+     * sample, so when the square of the sample's closest distance underflows
+     * (is 0 or subnormal for two different points), so do the squares the
+     * engines would compare.
+     *
+     * @return false if the closest squared distance of the sample underflows
+     */
+    private static boolean sampleSquaresExact(double[] xs, double[] ys, int size) {
+        if (size < 2) {
+            return true;
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        RadixSort.sortIndices(xs, order, 0, size);
+        ArrayClosestPair engine = new ArrayClosestPair();
+        engine.solve(xs, ys, order, size);
+        double dx = xs[engine.bestSecond] - xs[engine.bestFirst];
+        double dy = ys[engine.bestSecond] - ys[engine.bestFirst];
+        return isExactSquare(dx * dx + dy * dy, dx == 0 && dy == 0);
+    }
+
+    /**
+     * @return the number of sample points that are equal to the sample point
+     * before them in (x, y) order
+     */
+    private static int countDuplicates(double[] xs, double[] ys, int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        RadixSort.sortIndices(xs, order, 0, size);
+        int duplicates = 0;
+        for (int start = 0; start < size; ) {
+            int end = start + 1;
+            while (end < size && xs[order[end]] == xs[order[start]]) {
+                end++;
+            }
+            // Points with the same x, sorted by y to find the equal ones
+            if (end - start > 1) {
+                RadixSort.sortIndices(ys, order, start, end);
+                for (int i = start + 1; i < end; i++) {
+                    if (ys[order[i]] == ys[order[i - 1]]) {
+                        duplicates++;
+                    }
+                }
+            }
+            start = end;
+        }
+        return duplicates;
+    }
+
+    /**
+     * Spreads the sample over a grid of about size / 4 cells over the
+     * bounding box and compares the occupied cells with the number a uniform
+     * sample would occupy.
+     *
+     * @return 0 for points that occupy the grid like uniform points do, up to
+     * 1 for points that all fall in one cell
+     */
+    private static double clustering(double[] xs, double[] ys, int size, double minX, double minY,
+            double width, double height) {
+        int side = Math.max(1, (int) Math.sqrt(size / 4.0));
+        int columns = width > 0 ? side : 1;
+        int rows = height > 0 ? side : 1;
+        int cells = columns * rows;
+        if (cells == 1) {
+            return 0;
+        }
+        boolean[] occupied = new boolean[cells];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int column = width > 0 ? Math.min((int) ((xs[i] - minX) / width * columns), columns - 1) : 0;
+            int row = height > 0 ? Math.min((int) ((ys[i] - minY) / height * rows), rows - 1) : 0;
+            if (!occupied[row * columns + column]) {
+                occupied[row * columns + column] = true;
+                count++;
+            }
+        }
+        double uniform = cells * -Math.expm1(-(double) size / cells);
+        return Math.max(0, 1 - count / uniform);
+    }
+
+    /**
+     * The engine picked for an input and the features of the input.
+     */
+    public static class Plan {
+
+        private final Engine engine;
+        private final int numPoints;
+        private final double width;
+        private final double height;
+        private final int sampleSize;
+        private final int sampleDuplicates;
+        private final double clustering;
+
+        Plan(Engine engine, int numPoints, double width, double height, int sampleSize, int sampleDuplicates,
+                double clustering) {
+            this.engine = engine;
+            this.numPoints = numPoints;
+            this.width = width;
+            this.height = height;
+            this.sampleSize = sampleSize;
+            this.sampleDuplicates = sampleDuplicates;
+            this.clustering = clustering;
+        }
+
+        public Engine getEngine() {
+            return engine;
+        }
+
+        public int getNumPoints() {
+            return numPoints;
+        }
+
+        /**
+         * @return the width of the bounding box
+         */
+        public double getWidth() {
+            return width;
+        }
+
+        /**
+         * @return the height of the bounding box
+         */
+        public double getHeight() {
+            return height;
+        }
+
+        /**
+         * @return the number of sampled points, 0 when the engine was picked
+         * before sampling
+         */
+        public int getSampleSize() {
+            return sampleSize;
+        }
+
+        /**
+         * @return the number of sample points equal to another sample point
+         * (not counting the first of each group of equal points)
+         */
+        public int getSampleDuplicates() {
+            return sampleDuplicates;
+        }
+
+        /**
+         * @return 0 for points spread like uniform points, up to 1 for points
+         * that are all together
+         */
+        public double getClustering() {
+            return clustering;
+        }
+
+        @Override
+        public String toString() {
+            return engine + " (points=" + numPoints + " box=" + width + "x" + height + " sampleDuplicates="
+                    + sampleDuplicates + "/" + sampleSize + " clustering=" + String.format("%.2f", clustering) + ")";
+        }
+    }
+
+    /**
+     * The cutoffs of the planner.
+     */
+    public static class Calibration {
+
+        private static final long CALIBRATION_NANOS = 20_000_000;
+        private static final int[] LEAF_SIZES = {8, 16, 32, 64};
+        private static final int[] BRUTE_FORCE_SIZES = {8, 16, 32, 64, 128, 256, 512};
+
+        private final int bruteForceCutoff;
+        private final int leafSize;
+        private final boolean gridFaster;
+
+        /**
+         * @param bruteForceCutoff inputs of at most this many points are
+         * bruteforced
+         * @param leafSize the leaf size of ArrayClosestPair
+         * @param gridFaster whether GridClosestPair is used for inputs that
+         * are spread out
+         */
+        public Calibration(int bruteForceCutoff, int leafSize, boolean gridFaster) {
+            this.bruteForceCutoff = bruteForceCutoff;
+            this.leafSize = leafSize;
+            this.gridFaster = gridFaster;
+        }
+
+        public int getBruteForceCutoff() {
+            return bruteForceCutoff;
+        }
+
+        public int getLeafSize() {
+            return leafSize;
+        }
+
+        public boolean isGridFaster() {
+            return gridFaster;
+        }
+
+        /**
+         * @return the calibration of this JVM, measured on the first call
+         */
+        public static Calibration host() {
+            return Host.CALIBRATION;
+        }
+
+        /**
+         * Times the engines on uniform points: the leaf sizes of
+         * ArrayClosestPair on 2^14 points, then the brute force against it on
+         * growing inputs and GridClosestPair against it on 2^16 points.
+         *
+         * @return a new calibration for this CPU
+         */
+        public static Calibration measure() {
+            PointGenerator generator = new PointGenerator(1969);
+            PointStore leafInput = generator.generate(PointGenerator.Distribution.UNIFORM, 1 << 14);
+            int leafSize = LEAF_SIZES[0];
+            long leafTime = Long.MAX_VALUE;
+            for (int size : LEAF_SIZES) {
+                ArrayClosestPair engine = new ArrayClosestPair();
+                engine.setLeafSize(size);
+                long time = time(() -> engine.closestPair(leafInput));
+                if (time < leafTime) {
+                    leafTime = time;
+                    leafSize = size;
+                }
+            }
+
+            ArrayClosestPair engine = new ArrayClosestPair();
+            engine.setLeafSize(leafSize);
+            int bruteForceCutoff = 2;
+            for (int size : BRUTE_FORCE_SIZES) {
+                PointStore input = generator.generate(PointGenerator.Distribution.UNIFORM, size);
+                long bruteForce = time(() -> DistanceKernel.get().bruteForce(input));
+                long divideAndConquer = time(() -> engine.closestPair(input));
+                if (bruteForce > divideAndConquer) {
+                    break;
+                }
+                bruteForceCutoff = size;
+            }
+
+            PointStore gridInput = generator.generate(PointGenerator.Distribution.UNIFORM, 1 << 16);
+            GridClosestPair grid = new GridClosestPair(GRID_SEED);
+            boolean gridFaster = time(() -> grid.closestPair(gridInput)) < time(() -> engine.closestPair(gridInput));
+            return new Calibration(bruteForceCutoff, leafSize, gridFaster);
+        }
+
+        /**
+         * @return the least time of the runs of the second half of a time
+         * budget, the first half being the warm up
+         */
+        private static long time(Runnable run) {
+            long best = Long.MAX_VALUE;
+            long start = System.nanoTime();
+            long measureFrom = start + CALIBRATION_NANOS / 2;
+            long end = start + CALIBRATION_NANOS;
+            int runs = 0;
+            for (long now = start; now < end || runs < 3; runs++) {
+                run.run();
+                long elapsed = System.nanoTime() - now;
+                if (now >= measureFrom) {
+                    best = Math.min(best, elapsed);
+                }
+                now += elapsed;
+            }
+            return best == Long.MAX_VALUE ? end - start : best;
+        }
+
+        @Override
+        public String toString() {
+            return "bruteForceCutoff=" + bruteForceCutoff + " leafSize=" + leafSize + " gridFaster=" + gridFaster;
+        }
+
+        private static class Host {
+            static final Calibration CALIBRATION = measure();
+        }
+    }
+}
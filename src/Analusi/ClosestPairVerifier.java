@@ -0,0 +1,272 @@
+package Analusi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks a claimed closest pair in O(n) after sorting, instead of running the
+ * O(n^2) bruteForce like ClosestPair.evaluateResult does.
+ *
+ * A claim of distance d is right if its two points are in the input and no
+ * two points are closer than d. For the second part the points are cut into
+ * columns of width d: walking the points in x order, a point starts a new
+ * column when it is at least d to the right of the first point of the current
+ * column. Two points less than d apart in x are then in the same column or in
+ * neighbouring ones, so every point is only compared with the points of its
+ * column and of the next one that are less than d away from it in y. Within
+ * the columns the points are in y order, which makes those comparisons a
+ * window that slides along each column. If the claim is right a window holds
+ * a handful of points, because they are all at least d apart.
+ *
+ * Comparisons are done on squared distances computed like the engines do, so
+ * a certified claim is exact for them: no pair has a smaller squared distance
+ * than the claimed pair. When the squared distance of the claimed pair is not
+ * exact (see ClosestPair.isExactSquare), the comparisons are done on
+ * ClosestPair.hypot distances instead, like the engines do for such inputs.
+ * The sorts are the parallel radix sorts and the columns are checked in
+ * parallel.
+ */
+public class ClosestPairVerifier {
+
+    private ClosestPairVerifier() {
+    }
+
+    /**
+     * @param store the points the claim is about
+     * @param claimed the claimed closest pair, null if there are less than two
+     * points
+     * @return true if the claimed pair is two points of the store at the
+     * claimed distance and no two points of the store are closer
+     */
+    public static boolean certify(PointStore store, Pair claimed) {
+        int numPoints = store.size();
+        if (claimed == null || numPoints < 2) {
+            return claimed == null && numPoints < 2;
+        }
+        Point point1 = claimed.getPoint1();
+        Point point2 = claimed.getPoint2();
+        if (claimed.getDistance() != ClosestPair.distance(point1, point2)) {
+            return false;
+        }
+        int first = indexOf(store, point1, -1);
+        int second = indexOf(store, point2, first);
+        if (first < 0 || second < 0) {
+            return false;
+        }
+        return findCloserPair(store, first, second) == null;
+    }
+
+    /**
+     * @return the index of a point equal to point other than exclude, -1 if
+     * there is none
+     */
+    private static int indexOf(PointStore store, Point point, int exclude) {
+        double x = point.getX();
+        double y = point.getY();
+        return IntStream.range(0, store.size())
+                .parallel()
+                .filter(i -> i != exclude && store.xs[i] == x && store.ys[i] == y)
+                .findFirst()
+                .orElse(-1);
+    }
+
+    /**
+     * Looks for two points closer than the points at first and second.
+     *
+     * @param store the points to be examined
+     * @param first the index of a point of the store
+     * @param second the index of another point of the store
+     * @return two points whose squared distance (or hypot distance, if the
+     * square of the given pair is not exact) is smaller than that of first
+     * and second, or null if there are none
+     */
+    public static IndexPair findCloserPair(PointStore store, int first, int second) {
+        double[] xs = store.xs;
+        double[] ys = store.ys;
+        int numPoints = store.size();
+        double dx0 = xs[second] - xs[first];
+        double dy0 = ys[second] - ys[first];
+        if (dx0 == 0 && dy0 == 0) {
+            return null;
+        }
+        double squared = dx0 * dx0 + dy0 * dy0;
+        Bound bound = ClosestPair.isExactSquare(squared, false)
+                ? new Bound(squared, Double.NaN)
+                : new Bound(Double.NaN, ClosestPair.hypot(dx0, dy0));
+
+        // The x order, cut into columns
+        int[] indices = sortedIndices(xs, numPoints);
+        int[] columns = new int[numPoints];
+        int numColumns = 0;
+        double start = Double.NaN;
+        for (int position = 0; position < numPoints; position++) {
+            int index = indices[position];
+            if (numColumns == 0 || !bound.within(xs[index] - start)) {
+                start = xs[index];
+                numColumns++;
+            }
+            columns[index] = numColumns - 1;
+        }
+
+        // Sorted by y and then, stably, by column: the columns in order, each
+        // in y order
+        int[] order = sortedIndices(ys, numPoints);
+        long[] keys = new long[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = columns[order[i]];
+        }
+        RadixSort.parallelSort(keys, order, numPoints, new long[numPoints], new int[numPoints]);
+        int[] columnStarts = new int[numColumns + 1];
+        for (int i = 0; i < numPoints; i++) {
+            columnStarts[(int) keys[i] + 1]++;
+        }
+        for (int column = 0; column < numColumns; column++) {
+            columnStarts[column + 1] += columnStarts[column];
+        }
+
+        return IntStream.range(0, numColumns)
+                .parallel()
+                .mapToObj(column -> checkColumn(xs, ys, order, columnStarts, column, bound))
+                .filter(closer -> closer != null)
+                .findAny()
+                .orElse(null);
+    }
+
+    /**
+     * The distance of the claimed pair, as a squared distance when its square
+     * is exact and as a hypot distance otherwise.
+     */
+    private static final class Bound {
+        private final double squared;
+        private final double distance;
+
+        Bound(double squared, double distance) {
+            this.squared = squared;
+            this.distance = distance;
+        }
+
+        /**
+         * @return true if a coordinate difference is less than the bound
+         */
+        boolean within(double delta) {
+            return Double.isNaN(distance) ? delta * delta < squared : Math.abs(delta) < distance;
+        }
+
+        /**
+         * @return true if the pair of the given differences is closer than
+         * the bound
+         */
+        boolean closer(double dx, double dy) {
+            return Double.isNaN(distance) ? dx * dx + dy * dy < squared : ClosestPair.hypot(dx, dy) < distance;
+        }
+    }
+
+    private static int[] sortedIndices(double[] coordinates, int numPoints) {
+        long[] keys = new long[numPoints];
+        int[] indices = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = RadixSort.sortableBits(coordinates[i]);
+            indices[i] = i;
+        }
+        RadixSort.parallelSort(keys, indices, numPoints, new long[numPoints], new int[numPoints]);
+        return indices;
+    }
+
+    /**
+     * Compares the points of a column with the ones after them in the column
+     * and with the ones of the next column, within bound in y.
+     */
+    private static IndexPair checkColumn(double[] xs, double[] ys, int[] order, int[] columnStarts, int column,
+            Bound bound) {
+        int from = columnStarts[column];
+        int to = columnStarts[column + 1];
+        int nextTo = column + 1 < columnStarts.length - 1 ? columnStarts[column + 2] : to;
+        int low = to;
+        for (int i = from; i < to; i++) {
+            int index = order[i];
+            double x = xs[index];
+            double y = ys[index];
+            for (int j = i + 1; j < to; j++) {
+                if (!bound.within(ys[order[j]] - y)) {
+                    break;
+                }
+                IndexPair closer = compare(xs, ys, index, order[j], x, y, bound);
+                if (closer != null) {
+                    return closer;
+                }
+            }
+            // The window of the next column starts at its first point that is
+            // not bound or more below y
+            while (low < nextTo) {
+                double dy = y - ys[order[low]];
+                if (dy <= 0 || bound.within(dy)) {
+                    break;
+                }
+                low++;
+            }
+            for (int j = low; j < nextTo; j++) {
+                double dy = ys[order[j]] - y;
+                if (dy > 0 && !bound.within(dy)) {
+                    break;
+                }
+                IndexPair closer = compare(xs, ys, index, order[j], x, y, bound);
+                if (closer != null) {
+                    return closer;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static IndexPair compare(double[] xs, double[] ys, int index, int other, double x, double y,
+            Bound bound) {
+        double dx = xs[other] - x;
+        double dy = ys[other] - y;
+        if (bound.closer(dx, dy)) {
+            return new IndexPair(index, other, ClosestPair.hypot(dx, dy));
+        }
+        return null;
+    }
+
+    /**
+     * Runs every engine that takes a PointStore on every distribution of
+     * PointGenerator and certifies the results.
+     *
+     * Usage: java Analusi.ClosestPairVerifier [numPoints [seed]]
+     */
+    public static void main(String[] args) {
+        int numPoints = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1969;
+        boolean allCertified = true;
+        for (PointGenerator.Distribution distribution : PointGenerator.Distribution.values()) {
+            PointStore store = new PointGenerator(seed).generate(distribution, numPoints);
+            Map<String, Function<PointStore, Pair>> engines = new LinkedHashMap<>();
+            engines.put("ArrayClosestPair", new ArrayClosestPair()::closestPair);
+            engines.put("BottomUpClosestPair", new BottomUpClosestPair()::closestPair);
+            engines.put("GridClosestPair", new GridClosestPair()::closestPair);
+            engines.put("KdClosestPair", new KdClosestPair()::closestPair);
+            engines.put("ClosestPairPlanner", new ClosestPairPlanner()::closestPair);
+            engines.put("WarmStartClosestPair", new WarmStartClosestPair()::closestPair);
+            for (Map.Entry<String, Function<PointStore, Pair>> engine : engines.entrySet()) {
+                long start = System.nanoTime();
+                Pair pair = engine.getValue().apply(store);
+                long solved = System.nanoTime();
+                boolean certified = certify(store, pair);
+                long checked = System.nanoTime();
+                allCertified &= certified;
+                System.out.printf("%-10s %-22s %s solve %d ms, certify %d ms%n", distribution,
+                        engine.getKey(), certified ? "certified" : "WRONG",
+                        (solved - start) / 1000000, (checked - solved) / 1000000);
+            }
+        }
+        System.out.println(allCertified ? "All certified" : "Wrong results");
+        if (!allCertified) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package Analusi;
+
+import Analusi.ClosestPair.Pair;
+
+/**
+ * The inner loop of the brute force searches: the point among a range of
+ * points in primitive coordinate arrays with the least squared distance to a
+ * query point.
+ *
+ * get() returns a kernel built on the jdk.incubator.vector API, which computes
+ * the squared distances of several points at once, when the module is present
+ * (run with --add-modules jdk.incubator.vector), and a plain scalar loop
+ * otherwise. Both return exactly the same index for coordinates that are not
+ * NaN: the first point with the least squared distance, computed as
+ * dx * dx + dy * dy.
+ */
+public abstract class DistanceKernel {
+
+    private static final DistanceKernel DEFAULT = load();
+
+    /**
+     * @return the fastest kernel available on this JVM
+     */
+    public static DistanceKernel get() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the scalar kernel
+     */
+    public static DistanceKernel scalar() {
+        return ScalarDistanceKernel.INSTANCE;
+    }
+
+    private static DistanceKernel load() {
+        try {
+            return (DistanceKernel) Class.forName("Analusi.VectorDistanceKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return ScalarDistanceKernel.INSTANCE;
+        }
+    }
+
+    /**
+     * Finds the point in [from, to) closest to (x, y), if it is closer than
+     * the given bound.
+     *
+     * @param xs the x coordinates
+     * @param ys the y coordinates
+     * @param from first point to be examined, inclusive
+     * @param to last point to be examined, exclusive
+     * @param x the x coordinate of the query point
+     * @param y the y coordinate of the query point
+     * @param boundSquared only points with a smaller squared distance count
+     * @return the index of the first point with the least squared distance, or
+     * -1 if no point is closer than the bound
+     */
+    public abstract int nearest(double[] xs, double[] ys, int from, int to, double x, double y, double boundSquared);
+
+    /**
+     * The O(n^2) closest pair of a store, comparing every point with all the
+     * points after it through nearest().
+     *
+     * @param store the points to be examined
+     * @return a Pair of the closest points, or null for less than two points
+     */
+    public Pair bruteForce(PointStore store) {
+        int numPoints = store.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        double[] xs = store.xs;
+        double[] ys = store.ys;
+        double best = Double.POSITIVE_INFINITY;
+        int first = -1;
+        int second = -1;
+        for (int i = 0; i < numPoints - 1; i++) {
+            int j = nearest(xs, ys, i + 1, numPoints, xs[i], ys[i], best);
+            if (j >= 0) {
+                double dx = xs[j] - xs[i];
+                double dy = ys[j] - ys[i];
+                best = dx * dx + dy * dy;
+                first = i;
+                second = j;
+            }
+        }
+        if (first < 0) {
+            // Only NaN distances
+            first = 0;
+            second = 1;
+        }
+        return new Pair(store.getPoint(first), store.getPoint(second));
+    }
+
+    /**
+     * The kernel used when the vector API is not available.
+     */
+    static class ScalarDistanceKernel extends DistanceKernel {
+
+        static final ScalarDistanceKernel INSTANCE = new ScalarDistanceKernel();
+
+        @Override
+        public int nearest(double[] xs, double[] ys, int from, int to, double x, double y, double boundSquared) {
+            double best = boundSquared;
+            int nearest = -1;
+            for (int i = from; i < to; i++) {
+                double dx = xs[i] - x;
+                double dy = ys[i] - y;
+                double distance = dx * dx + dy * dy;
+                if (distance < best) {
+                    best = distance;
+                    nearest = i;
+                }
+            }
+            return nearest;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package Analusi;
+
+import java.util.Arrays;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * A closest pair that is kept up to date while points are inserted and
+ * removed, instead of being recomputed from scratch after every change.
+ *
+ * Every live point p remembers a neighbour q and their distance, where
+ * q is at least as close to p as every live point inserted before p. The
+ * closest pair (a, b), with b inserted after a, is then remembered by b, so
+ * the closest pair is the remembered pair with the least distance; these pairs
+ * are kept in a binary heap. The neighbours are found with a nearest neighbour
+ * search (CellGrid.nearest) in a hash grid whose cells hold about one point
+ * each.
+ *
+ * - insert(p) finds the nearest live point of p and pushes the pair.
+ * - remove(p) only has to find new neighbours for the points that remembered
+ *   p; the heap entries of removed or changed points are dropped lazily.
+ * - The grid is rebuilt when the number of points doubles or drops to a
+ *   quarter, so its cell size keeps up with the density of the points, and
+ *   when a point lands beyond CellGrid.MAX_CELL cells from the origin.
+ *
+ * For points that are spread out (not all in a few cells) the updates cost
+ * expected O(1) amortized grid cells plus O(log n) for the heap. A search
+ * that would walk more rings of cells than the grid has table slots (between
+ * far apart clusters) checks every point instead, so no update costs more
+ * than O(n). Distances are computed with ClosestPair.hypot, like those of
+ * Pair, and the grid searches fall back to them when squares overflow or
+ * underflow.
+ *
+ * The class is not thread safe.
+ */
+public class DynamicClosestPair {
+
+    private static final int NONE = -1;
+    private static final int MIN_GRID_POINTS = 16;
+
+    // Points live in slots, which are reused after a removal
+    private Point[] points = new Point[16];
+    private double[] xs = new double[16];
+    private double[] ys = new double[16];
+    private long[] cellXs = new long[16];
+    private long[] cellYs = new long[16];
+    private boolean[] alive = new boolean[16];
+    private int slots;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int size;
+
+    // The remembered neighbour of every slot and the slots that remember it
+    private int[] neighbours = new int[16];
+    private int[] versions = new int[16];
+    private int[][] dependents = new int[16][];
+    private int[] dependentCounts = new int[16];
+
+    // Binary heap of (distance, slot, version of the slot)
+    private double[] heapDistances = new double[16];
+    private int[] heapSlots = new int[16];
+    private int[] heapVersions = new int[16];
+    private int heapSize;
+
+    private final CellGrid grid = new CellGrid(16);
+    private int gridPoints;
+
+    public DynamicClosestPair() {
+        // The first insert rebuilds the grid with a cell size from its point
+        grid.reset(1, MIN_GRID_POINTS);
+        gridPoints = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a point. Equal points may be added more than once.
+     *
+     * @param point the point to be added
+     */
+    public void insert(Point point) {
+        int slot = allocateSlot();
+        points[slot] = point;
+        xs[slot] = point.getX();
+        ys[slot] = point.getY();
+        alive[slot] = true;
+        neighbours[slot] = NONE;
+        dependentCounts[slot] = 0;
+        size++;
+        if (size > 2 * gridPoints || !grid.fits(xs[slot], ys[slot])) {
+            rebuildGrid();
+        } else {
+            addToGrid(slot);
+        }
+        updateNeighbour(slot);
+    }
+
+    /**
+     * Removes one point equal to the given one.
+     *
+     * @param point the point to be removed
+     * @return false if there was no such point
+     */
+    public boolean remove(Point point) {
+        int slot = find(point.getX(), point.getY());
+        if (slot == NONE) {
+            return false;
+        }
+        grid.remove(slot, cellXs[slot], cellYs[slot]);
+        alive[slot] = false;
+        points[slot] = null;
+        versions[slot]++;
+        neighbours[slot] = NONE;
+        size--;
+
+        // Find a new neighbour for every point that remembered this one
+        int[] waiting = dependents[slot];
+        int count = dependentCounts[slot];
+        dependents[slot] = null;
+        dependentCounts[slot] = 0;
+        for (int i = 0; i < count; i++) {
+            int dependent = waiting[i];
+            if (alive[dependent] && neighbours[dependent] == slot) {
+                updateNeighbour(dependent);
+            }
+        }
+        freeSlots[freeCount++] = slot;
+
+        if (gridPoints > MIN_GRID_POINTS && size < gridPoints / 4) {
+            rebuildGrid();
+        }
+        if (heapSize > 2 * size + 16) {
+            rebuildHeap();
+        }
+        return true;
+    }
+
+    /**
+     * @return the closest pair of the current points, or null for less than
+     * two points
+     */
+    public Pair closestPair() {
+        while (heapSize > 0) {
+            int slot = heapSlots[0];
+            if (alive[slot] && versions[slot] == heapVersions[0]) {
+                return new Pair(points[slot], points[neighbours[slot]]);
+            }
+            pop();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the nearest live point of a slot and makes it its neighbour.
+     */
+    private void updateNeighbour(int slot) {
+        versions[slot]++;
+        int neighbour = grid.nearest(xs, ys, xs[slot], ys[slot], slot, Double.POSITIVE_INFINITY);
+        if (neighbour == CellGrid.TOO_FAR) {
+            neighbour = grid.scan(xs, ys, xs[slot], ys[slot], slot, Double.POSITIVE_INFINITY);
+        }
+        if (neighbour == NONE && size > 1) {
+            // Only points at an infinite distance are left; any one will do
+            for (int other = 0; neighbour == NONE; other++) {
+                if (alive[other] && other != slot) {
+                    neighbour = other;
+                }
+            }
+        }
+        neighbours[slot] = neighbour;
+        if (neighbour == NONE) {
+            return;
+        }
+        push(distance(slot, neighbour), slot, versions[slot]);
+        addDependent(neighbour, slot);
+    }
+
+    private double distance(int slot, int other) {
+        return ClosestPair.hypot(xs[other] - xs[slot], ys[other] - ys[slot]);
+    }
+
+    private int find(double x, double y) {
+        for (int other = grid.head(grid.cell(x), grid.cell(y)); other >= 0; other = grid.next[other]) {
+            if (xs[other] == x && ys[other] == y) {
+                return other;
+            }
+        }
+        return NONE;
+    }
+
+    private void addToGrid(int slot) {
+        long cx = grid.cell(xs[slot]);
+        long cy = grid.cell(ys[slot]);
+        cellXs[slot] = cx;
+        cellYs[slot] = cy;
+        grid.insert(slot, cx, cy);
+    }
+
+    /**
+     * Rebuilds the grid with cells of about one point each, taken from the
+     * bounding box of the live points.
+     */
+    private void rebuildGrid() {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int slot = 0; slot < slots; slot++) {
+            if (alive[slot]) {
+                minX = Math.min(minX, xs[slot]);
+                maxX = Math.max(maxX, xs[slot]);
+                minY = Math.min(minY, ys[slot]);
+                maxY = Math.max(maxY, ys[slot]);
+            }
+        }
+        gridPoints = size;
+        grid.reset(CellGrid.cellSizeFor(minX, minY, maxX, maxY, size), Math.max(size, MIN_GRID_POINTS));
+        for (int slot = 0; slot < slots; slot++) {
+            if (alive[slot]) {
+                addToGrid(slot);
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slots == xs.length) {
+            int capacity = slots + (slots >> 1);
+            points = Arrays.copyOf(points, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            cellXs = Arrays.copyOf(cellXs, capacity);
+            cellYs = Arrays.copyOf(cellYs, capacity);
+            alive = Arrays.copyOf(alive, capacity);
+            freeSlots = Arrays.copyOf(freeSlots, capacity);
+            neighbours = Arrays.copyOf(neighbours, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            dependents = Arrays.copyOf(dependents, capacity);
+            dependentCounts = Arrays.copyOf(dependentCounts, capacity);
+            grid.ensurePointCapacity(capacity);
+        }
+        return slots++;
+    }
+
+    /**
+     * Records that dependent remembers slot as its neighbour. Entries of points
+     * that have moved on to another neighbour are dropped before the list
+     * grows.
+     */
+    private void addDependent(int slot, int dependent) {
+        int[] list = dependents[slot];
+        int count = dependentCounts[slot];
+        if (list == null) {
+            list = new int[4];
+            dependents[slot] = list;
+        } else if (count == list.length) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int other = list[i];
+                if (alive[other] && neighbours[other] == slot) {
+                    list[kept++] = other;
+                }
+            }
+            count = kept;
+            if (count > list.length / 2) {
+                list = Arrays.copyOf(list, list.length * 2);
+                dependents[slot] = list;
+            }
+        }
+        list[count++] = dependent;
+        dependentCounts[slot] = count;
+    }
+
+    private void rebuildHeap() {
+        heapSize = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (alive[slot] && neighbours[slot] != NONE) {
+                push(distance(slot, neighbours[slot]), slot, versions[slot]);
+            }
+        }
+    }
+
+    private void push(double distance, int slot, int version) {
+        if (heapSize == heapDistances.length) {
+            int capacity = heapSize * 2;
+            heapDistances = Arrays.copyOf(heapDistances, capacity);
+            heapSlots = Arrays.copyOf(heapSlots, capacity);
+            heapVersions = Arrays.copyOf(heapVersions, capacity);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapDistances[parent] <= distance) {
+                break;
+            }
+            heapDistances[i] = heapDistances[parent];
+            heapSlots[i] = heapSlots[parent];
+            heapVersions[i] = heapVersions[parent];
+            i = parent;
+        }
+        heapDistances[i] = distance;
+        heapSlots[i] = slot;
+        heapVersions[i] = version;
+    }
+
+    private void pop() {
+        heapSize--;
+        double distance = heapDistances[heapSize];
+        int slot = heapSlots[heapSize];
+        int version = heapVersions[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapDistances[child + 1] < heapDistances[child]) {
+                child++;
+            }
+            if (distance <= heapDistances[child]) {
+                break;
+            }
+            heapDistances[i] = heapDistances[child];
+            heapSlots[i] = heapSlots[child];
+            heapVersions[i] = heapVersions[child];
+            i = child;
+        }
+        heapDistances[i] = distance;
+        heapSlots[i] = slot;
+        heapVersions[i] = version;
+    }
+}
@@ -0,0 +1,205 @@
+package Analusi;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Randomized grid closest pair (Rabin, Khuller and Matias), which runs in
+ * expected O(n) time and does not sort at all.
+ *
+ * The points are shuffled and then inserted one by one into a hash grid whose
+ * cells have the side of the current closest distance d. A point closer than
+ * d to the new point can only be in one of the 3x3 cells around it. When such
+ * a point is found d shrinks and the grid is rebuilt from the points inserted
+ * so far with the new cell size. Because of the random order the i-th point
+ * changes d with probability at most 2/i, so the rebuilds cost O(n) in
+ * expectation.
+ *
+ * The grid needs exact squared distances and cell indices that fit in a
+ * long. When the closest distance is so small next to the coordinates that a
+ * cell index would pass CellGrid.MAX_CELL, or its square is not exact (see
+ * ClosestPair.isExactSquare), the input is handed to ArrayClosestPair instead.
+ *
+ * The scratch arrays are kept between calls, so an instance should not be used
+ * by more than one thread at a time.
+ */
+public class GridClosestPair extends ClosestPair {
+
+    // Cells are made a little larger than d so that rounding in x / cellSize
+    // can never put two points closer than d more than one cell apart.
+    private static final double CELL_SLACK = 1 + 1e-9;
+
+    private final Random random;
+    private int[] order = new int[0];
+    private CellGrid grid = new CellGrid(0);
+
+    public GridClosestPair() {
+        this(new Random());
+    }
+
+    /**
+     * @param seed the seed of the shuffle, for reproducible runs
+     */
+    public GridClosestPair(long seed) {
+        this(new Random(seed));
+    }
+
+    private GridClosestPair(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Finds the closest pair of the points in the given store.
+     *
+     * @param store the points to be examined
+     * @return a Pair of the closest points, or null for less than two points
+     */
+    public Pair closestPair(PointStore store) {
+        long closest = solve(store.xs, store.ys, store.size());
+        if (closest < 0) {
+            return null;
+        }
+        return new Pair(store.getPoint((int) (closest >>> 32)), store.getPoint((int) closest));
+    }
+
+    /**
+     * The grid needs no presorted lists, so unlike the default implementation
+     * this one goes straight to the points.
+     */
+    @Override
+    public Pair initializeDivideAndConquer(List<Point> points) {
+        return divideAndConquer(points, points);
+    }
+
+    /**
+     * Only the first list is used, its order does not matter.
+     */
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        PointStore store = PointStore.fromPoints(pointsSortedByX);
+        long closest = solve(store.xs, store.ys, store.size());
+        if (closest < 0) {
+            return null;
+        }
+        return new Pair(pointsSortedByX.get((int) (closest >>> 32)), pointsSortedByX.get((int) closest));
+    }
+
+    /**
+     * @return the indices of the closest pair packed as (first << 32 | second),
+     * or -1 for less than two points
+     */
+    private long solve(double[] xs, double[] ys, int numPoints) {
+        if (numPoints < 2) {
+            return -1;
+        }
+        if (order.length < numPoints) {
+            order = new int[numPoints];
+        }
+        grid.ensurePointCapacity(numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            order[i] = i;
+        }
+        for (int i = numPoints - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        double extent = 0;
+        for (int i = 0; i < numPoints; i++) {
+            extent = Math.max(extent, Math.max(Math.abs(xs[i]), Math.abs(ys[i])));
+        }
+
+        int first = order[0];
+        int second = order[1];
+        double best = distanceSquared(xs, ys, first, second);
+        if (!fitsGrid(xs, ys, first, second, best, extent)) {
+            return fallback(xs, ys, numPoints);
+        }
+        rebuild(xs, ys, best, 2);
+
+        for (int i = 2; i < numPoints && best > 0; i++) {
+            int point = order[i];
+            double x = xs[point];
+            double y = ys[point];
+            long cx = grid.cell(x);
+            long cy = grid.cell(y);
+            double closest = best;
+            int closestPoint = -1;
+            for (int ox = -1; ox <= 1; ox++) {
+                for (int oy = -1; oy <= 1; oy++) {
+                    for (int other = grid.head(cx + ox, cy + oy); other >= 0; other = grid.next[other]) {
+                        double dx = xs[other] - x;
+                        double dy = ys[other] - y;
+                        double distance = dx * dx + dy * dy;
+                        if (distance < closest) {
+                            closest = distance;
+                            closestPoint = other;
+                        }
+                    }
+                }
+            }
+            if (closestPoint >= 0) {
+                best = closest;
+                first = closestPoint;
+                second = point;
+                if (!fitsGrid(xs, ys, first, second, best, extent)) {
+                    return fallback(xs, ys, numPoints);
+                }
+                rebuild(xs, ys, best, i + 1);
+            } else {
+                grid.insert(point, cx, cy);
+            }
+        }
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Refills the grid with the first count shuffled points, using cells of
+     * the side of the given squared distance.
+     */
+    private void rebuild(double[] xs, double[] ys, double bestSquared, int count) {
+        grid.reset(Math.sqrt(bestSquared) * CELL_SLACK, count);
+        if (bestSquared == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int point = order[i];
+            grid.insert(point, grid.cell(xs[point]), grid.cell(ys[point]));
+        }
+    }
+
+    /**
+     * Whether the grid can go on with the given best pair: its squared
+     * distance is exact and cells of its side index every coordinate.
+     */
+    private boolean fitsGrid(double[] xs, double[] ys, int first, int second, double bestSquared, double extent) {
+        boolean equalPoints = xs[first] == xs[second] && ys[first] == ys[second];
+        if (!isExactSquare(bestSquared, equalPoints)) {
+            return false;
+        }
+        return bestSquared == 0 || extent / (Math.sqrt(bestSquared) * CELL_SLACK) < CellGrid.MAX_CELL;
+    }
+
+    /**
+     * Solves the input with ArrayClosestPair, for the inputs the grid can not
+     * take.
+     */
+    private static long fallback(double[] xs, double[] ys, int numPoints) {
+        int[] indices = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            indices[i] = i;
+        }
+        RadixSort.sortIndices(xs, indices, 0, numPoints);
+        ArrayClosestPair engine = new ArrayClosestPair();
+        engine.solve(xs, ys, indices, numPoints);
+        return ((long) engine.bestFirst << 32) | (engine.bestSecond & 0xFFFFFFFFL);
+    }
+
+    private static double distanceSquared(double[] xs, double[] ys, int point1, int point2) {
+        double dx = xs[point2] - xs[point1];
+        double dy = ys[point2] - ys[point1];
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,36 @@
+package Analusi;
+
+/**
+ * A pair of points given by their indices in the point set they come from,
+ * with their L2 distance. It is the result type of the engines that work on
+ * points without Point objects, e.g. the points of a PointCloud.
+ */
+public class IndexPair {
+
+    private final int first;
+    private final int second;
+    private final double distance;
+
+    public IndexPair(int first, int second, double distance) {
+        this.first = first;
+        this.second = second;
+        this.distance = distance;
+    }
+
+    public int getFirst() {
+        return first;
+    }
+
+    public int getSecond() {
+        return second;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        return first + "-" + second + " : " + distance;
+    }
+}
@@ -0,0 +1,146 @@
+package Analusi;
+
+import java.util.List;
+
+/**
+ * Closest pair in any dimension, with a k-d tree.
+ *
+ * The points are put in a KdTree and every point asks for its nearest
+ * neighbour that is closer than the best distance found so far. The queries
+ * go through the points in tree order, so consecutive queries start from
+ * nearby points and touch the same part of the tree. Once a close pair is
+ * known most queries only visit the path to their own leaf and a few leaves
+ * around it, so for points that are spread out the whole search takes
+ * O(n log n). A distance of 0 ends the search at once.
+ *
+ * The squared distances are compared, so in three or more dimensions the
+ * coordinate differences have to be small enough (below about 1e154) for
+ * their squares not to overflow, and large enough (above about 1e-154) for
+ * them not to underflow. In two dimensions a result whose squared distance is
+ * not exact (see ClosestPair.isExactSquare) is solved again by
+ * ArrayClosestPair, and the returned distance is computed with
+ * ClosestPair.hypot; in the others it is the square root of the sum of
+ * squares.
+ *
+ * As a ClosestPair it solves the two dimensional problem and, like
+ * GridClosestPair, does not need the presorted lists.
+ */
+public class KdClosestPair extends ClosestPair {
+
+    /**
+     * Finds the closest pair of the points of a cloud.
+     *
+     * @param cloud the points to be examined
+     * @return the indices of the closest points and their distance, or null
+     * for less than two points
+     */
+    public IndexPair closestPair(PointCloud cloud) {
+        if (cloud.size() < 2) {
+            return null;
+        }
+        KdTree tree = new KdTree(cloud);
+        long closest = solve(tree);
+        int first = tree.indices[(int) (closest >>> 32)];
+        int second = tree.indices[(int) closest];
+        if (cloud.dimension == 2 && !isExactSquare(cloud, first, second)) {
+            return solvePlanar(cloud);
+        }
+        return new IndexPair(first, second, distance(cloud, first, second));
+    }
+
+    private static boolean isExactSquare(PointCloud cloud, int first, int second) {
+        double dx = cloud.get(second, 0) - cloud.get(first, 0);
+        double dy = cloud.get(second, 1) - cloud.get(first, 1);
+        return isExactSquare(dx * dx + dy * dy, dx == 0 && dy == 0);
+    }
+
+    /**
+     * Solves a two dimensional cloud with ArrayClosestPair, which falls back
+     * to hypot distances where squares fail.
+     */
+    private static IndexPair solvePlanar(PointCloud cloud) {
+        int numPoints = cloud.size();
+        double[] xs = new double[numPoints];
+        double[] ys = new double[numPoints];
+        int[] indices = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            xs[i] = cloud.get(i, 0);
+            ys[i] = cloud.get(i, 1);
+            indices[i] = i;
+        }
+        RadixSort.sortIndices(xs, indices, 0, numPoints);
+        ArrayClosestPair engine = new ArrayClosestPair();
+        engine.solve(xs, ys, indices, numPoints);
+        return new IndexPair(engine.bestFirst, engine.bestSecond, distance(cloud, engine.bestFirst, engine.bestSecond));
+    }
+
+    /**
+     * Finds the closest pair of the points in the given store.
+     *
+     * @param store the points to be examined
+     * @return a Pair of the closest points, or null for less than two points
+     */
+    public Pair closestPair(PointStore store) {
+        IndexPair closest = closestPair(PointCloud.fromStore(store));
+        if (closest == null) {
+            return null;
+        }
+        return new Pair(store.getPoint(closest.getFirst()), store.getPoint(closest.getSecond()));
+    }
+
+    /**
+     * The tree needs no presorted lists, so unlike the default implementation
+     * this one goes straight to the points.
+     */
+    @Override
+    public Pair initializeDivideAndConquer(List<Point> points) {
+        return divideAndConquer(points, points);
+    }
+
+    /**
+     * Only the first list is used, its order does not matter.
+     */
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        IndexPair closest = closestPair(PointCloud.fromStore(PointStore.fromPoints(pointsSortedByX)));
+        if (closest == null) {
+            return null;
+        }
+        return new Pair(pointsSortedByX.get(closest.getFirst()), pointsSortedByX.get(closest.getSecond()));
+    }
+
+    /**
+     * @return the tree positions of the closest pair packed as
+     * (first << 32 | second)
+     */
+    private static long solve(KdTree tree) {
+        double[] points = tree.coordinates;
+        int dimension = tree.dimension;
+        KdTree.Nearest nearest = new KdTree.Nearest();
+        double best = Double.POSITIVE_INFINITY;
+        int first = 0;
+        int second = 1;
+        for (int position = 0; position < tree.size && best > 0; position++) {
+            nearest.reset(best);
+            tree.nearest(points, position * dimension, position, nearest);
+            if (nearest.position >= 0) {
+                best = nearest.distanceSquared;
+                first = position;
+                second = nearest.position;
+            }
+        }
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private static double distance(PointCloud cloud, int first, int second) {
+        if (cloud.dimension == 2) {
+            return hypot(cloud.get(second, 0) - cloud.get(first, 0), cloud.get(second, 1) - cloud.get(first, 1));
+        }
+        double sum = 0;
+        for (int axis = 0; axis < cloud.dimension; axis++) {
+            double delta = cloud.get(second, axis) - cloud.get(first, axis);
+            sum += delta * delta;
+        }
+        return Math.sqrt(sum);
+    }
+}
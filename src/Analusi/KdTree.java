@@ -0,0 +1,287 @@
+package Analusi;
+
+/**
+ * A k-d tree over the points of a PointCloud, for nearest neighbour queries.
+ *
+ * The tree is built once and never changes. Every node splits its points at
+ * the median of the axis with the largest spread, so the tree is balanced and
+ * the children of node k are nodes 2k and 2k + 1 of a range that is split in
+ * half; ranges of at most LEAF_SIZE points are leaves. The coordinates are
+ * copied in tree order, so the points of a leaf are next to each other in
+ * memory. Queries keep their state in a Nearest object of the caller, so one
+ * tree can be queried from many threads at once.
+ *
+ * The leaf scans, where the distances are computed, have separate loops for
+ * two and three dimensions.
+ */
+final class KdTree {
+
+    static final int LEAF_SIZE = 8;
+
+    final int dimension;
+    final int size;
+    /**
+     * The coordinates of the points in tree order, point after point.
+     */
+    final double[] coordinates;
+    /**
+     * The index in the original point set of the point at every tree position.
+     */
+    final int[] indices;
+    private final int[] axes;
+    private final double[] splits;
+
+    /**
+     * The result of a nearest neighbour query: the tree position of the
+     * nearest point and its squared distance. Before a query distanceSquared
+     * is the bound: only points closer than it are reported.
+     */
+    static final class Nearest {
+
+        int position;
+        double distanceSquared;
+
+        void reset(double boundSquared) {
+            position = -1;
+            distanceSquared = boundSquared;
+        }
+    }
+
+    KdTree(PointCloud cloud) {
+        this(cloud.coordinates, cloud.dimension, cloud.size);
+    }
+
+    KdTree(double[] points, int dimension, int size) {
+        this.dimension = dimension;
+        this.size = size;
+        indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        int levels = 0;
+        for (int count = size; count > LEAF_SIZE; count = (count + 1) / 2) {
+            levels++;
+        }
+        axes = new int[1 << levels];
+        splits = new double[1 << levels];
+        build(points, 1, 0, size);
+
+        coordinates = new double[size * dimension];
+        for (int position = 0; position < size; position++) {
+            System.arraycopy(points, indices[position] * dimension, coordinates, position * dimension, dimension);
+        }
+    }
+
+    private void build(double[] points, int node, int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        int axis = 0;
+        double widest = -1;
+        for (int a = 0; a < dimension; a++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                double value = points[indices[i] * dimension + a];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                axis = a;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(points, axis, lo, hi - 1, mid);
+        axes[node] = axis;
+        splits[node] = points[indices[mid] * dimension + axis];
+        build(points, 2 * node, lo, mid);
+        build(points, 2 * node + 1, mid, hi);
+    }
+
+    /**
+     * Reorders indices[left, right] so that indices[k] holds the point that
+     * would be there if the range was sorted by the given axis, with no larger
+     * points before it and no smaller points after it.
+     */
+    private void select(double[] points, int axis, int left, int right, int k) {
+        while (right > left) {
+            double pivot = points[indices[(left + right) >>> 1] * dimension + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (points[indices[i] * dimension + axis] < pivot) {
+                    i++;
+                }
+                while (points[indices[j] * dimension + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = indices[i];
+                    indices[i] = indices[j];
+                    indices[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the point nearest to the query that is closer than
+     * result.distanceSquared.
+     *
+     * @param query the array that holds the query point
+     * @param offset the index of the first coordinate of the query point
+     * @param exclude a tree position that is skipped (the query point itself
+     * when it is in the tree), or -1
+     * @param result the bound on entry, the nearest point (if any) on return
+     */
+    void nearest(double[] query, int offset, int exclude, Nearest result) {
+        search(1, 0, size, query, offset, exclude, result);
+    }
+
+    /**
+     * Finds the point nearest to (x, y) that is closer than bound, in a tree
+     * of dimension 2. Squared distances are compared first; when the square
+     * of the result (or of the bound, if there is no result) overflows or
+     * underflows the search is repeated comparing ClosestPair.hypot
+     * distances.
+     *
+     * @param exclude a tree position that is skipped, or -1
+     * @return the tree position of the nearest point, or -1 if no point is
+     * closer than the bound
+     */
+    int nearest(double x, double y, int exclude, double bound) {
+        Nearest result = new Nearest();
+        result.reset(bound * bound);
+        search(1, 0, size, new double[]{x, y}, 0, exclude, result);
+        boolean exact;
+        if (result.position >= 0) {
+            double dx = coordinates[2 * result.position] - x;
+            double dy = coordinates[2 * result.position + 1] - y;
+            exact = ClosestPair.isExactSquare(result.distanceSquared, dx == 0 && dy == 0);
+        } else {
+            exact = bound == 0 || ClosestPair.isExactSquare(bound * bound, false);
+        }
+        if (!exact) {
+            result.reset(bound);
+            searchByHypot(1, 0, size, x, y, exclude, result);
+        }
+        return result.position;
+    }
+
+    /**
+     * Like search for a tree of dimension 2, but result.distanceSquared holds
+     * the ClosestPair.hypot distance itself.
+     */
+    private void searchByHypot(int node, int lo, int hi, double x, double y, int exclude, Nearest result) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int p = lo; p < hi; p++) {
+                double distance = ClosestPair.hypot(coordinates[2 * p] - x, coordinates[2 * p + 1] - y);
+                if (distance < result.distanceSquared && p != exclude) {
+                    result.distanceSquared = distance;
+                    result.position = p;
+                }
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double diff = (axes[node] == 0 ? x : y) - splits[node];
+        if (diff < 0) {
+            searchByHypot(2 * node, lo, mid, x, y, exclude, result);
+            if (-diff < result.distanceSquared) {
+                searchByHypot(2 * node + 1, mid, hi, x, y, exclude, result);
+            }
+        } else {
+            searchByHypot(2 * node + 1, mid, hi, x, y, exclude, result);
+            if (diff < result.distanceSquared) {
+                searchByHypot(2 * node, lo, mid, x, y, exclude, result);
+            }
+        }
+    }
+
+    private void search(int node, int lo, int hi, double[] query, int offset, int exclude, Nearest result) {
+        if (hi - lo <= LEAF_SIZE) {
+            scan(lo, hi, query, offset, exclude, result);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double diff = query[offset + axes[node]] - splits[node];
+        if (diff < 0) {
+            search(2 * node, lo, mid, query, offset, exclude, result);
+            if (diff * diff < result.distanceSquared) {
+                search(2 * node + 1, mid, hi, query, offset, exclude, result);
+            }
+        } else {
+            search(2 * node + 1, mid, hi, query, offset, exclude, result);
+            if (diff * diff < result.distanceSquared) {
+                search(2 * node, lo, mid, query, offset, exclude, result);
+            }
+        }
+    }
+
+    private void scan(int lo, int hi, double[] query, int offset, int exclude, Nearest result) {
+        double[] points = coordinates;
+        double best = result.distanceSquared;
+        int closest = -1;
+        switch (dimension) {
+            case 2: {
+                double x = query[offset];
+                double y = query[offset + 1];
+                for (int p = lo; p < hi; p++) {
+                    double dx = points[2 * p] - x;
+                    double dy = points[2 * p + 1] - y;
+                    double distance = dx * dx + dy * dy;
+                    if (distance < best && p != exclude) {
+                        best = distance;
+                        closest = p;
+                    }
+                }
+                break;
+            }
+            case 3: {
+                double x = query[offset];
+                double y = query[offset + 1];
+                double z = query[offset + 2];
+                for (int p = lo; p < hi; p++) {
+                    double dx = points[3 * p] - x;
+                    double dy = points[3 * p + 1] - y;
+                    double dz = points[3 * p + 2] - z;
+                    double distance = dx * dx + dy * dy + dz * dz;
+                    if (distance < best && p != exclude) {
+                        best = distance;
+                        closest = p;
+                    }
+                }
+                break;
+            }
+            default: {
+                int d = dimension;
+                for (int p = lo; p < hi; p++) {
+                    double distance = 0;
+                    // Stop summing once the point is known to be too far
+                    for (int a = 0; a < d && distance < best; a++) {
+                        double delta = points[p * d + a] - query[offset + a];
+                        distance += delta * delta;
+                    }
+                    if (distance < best && p != exclude) {
+                        best = distance;
+                        closest = p;
+                    }
+                }
+            }
+        }
+        if (closest >= 0) {
+            result.position = closest;
+            result.distanceSquared = best;
+        }
+    }
+}
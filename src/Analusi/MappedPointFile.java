@@ -0,0 +1,148 @@
+package Analusi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary file of points, memory mapped for reading.
+ *
+ * The format is packed little-endian doubles, x then y, 16 bytes per point,
+ * with no header. A single mapping is limited to 2 GiB, so the file is mapped
+ * in chunks and points are addressed with long indices; the file can hold far
+ * more points than fit in the heap (or in an int).
+ */
+public class MappedPointFile implements AutoCloseable {
+
+    public static final int POINT_BYTES = 16;
+    private static final int CHUNK_SHIFT = 26;
+    private static final long CHUNK_POINTS = 1L << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = (int) CHUNK_POINTS - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private MappedPointFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size() / POINT_BYTES;
+        int numChunks = (int) ((size + CHUNK_POINTS - 1) >>> CHUNK_SHIFT);
+        chunks = new MappedByteBuffer[numChunks];
+        for (int i = 0; i < numChunks; i++) {
+            long first = (long) i << CHUNK_SHIFT;
+            long points = Math.min(CHUNK_POINTS, size - first);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * POINT_BYTES, points * POINT_BYTES);
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Maps a point file. A trailing partial point is ignored.
+     *
+     * @param path the file
+     * @return the mapped file, to be closed by the caller
+     */
+    public static MappedPointFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedPointFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public double getX(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].getDouble(((int) index & CHUNK_MASK) * POINT_BYTES);
+    }
+
+    public double getY(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].getDouble(((int) index & CHUNK_MASK) * POINT_BYTES + 8);
+    }
+
+    /**
+     * Copies count points starting at first into a new store.
+     */
+    public PointStore read(long first, int count) {
+        PointStore store = new PointStore(count);
+        for (int i = 0; i < count; i++) {
+            store.add(getX(first + i), getY(first + i));
+        }
+        return store;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes all the points of a store to a new point file.
+     */
+    public static void write(Path path, PointStore store) throws IOException {
+        try (Writer writer = new Writer(path)) {
+            for (int i = 0; i < store.size(); i++) {
+                writer.append(store.xs[i], store.ys[i]);
+            }
+        }
+    }
+
+    /**
+     * Appends points to a point file through a buffer.
+     */
+    public static class Writer implements AutoCloseable {
+
+        private static final int BUFFER_POINTS = 4096;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long written;
+
+        public Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(BUFFER_POINTS * POINT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public void append(double x, double y) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putDouble(x);
+            buffer.putDouble(y);
+            written++;
+        }
+
+        /**
+         * @return the number of points appended so far
+         */
+        public long size() {
+            return written;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
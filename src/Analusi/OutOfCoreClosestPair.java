@@ -0,0 +1,180 @@
+package Analusi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import Analusi.ClosestPair.Pair;
+
+/**
+ * Closest pair of a point file that does not fit in the heap.
+ *
+ * The file (see MappedPointFile) is split into vertical slabs: the slab
+ * boundaries are x quantiles of a random sample, and one pass over the mapped
+ * file distributes the points into one file per slab. The slabs are then
+ * loaded one at a time, left to right, and solved with ArrayClosestPair. A pair
+ * closer than the best distance d found so far that crosses a slab boundary
+ * has both points less than d away from the boundary, so the points of the
+ * earlier slabs that are within d of the next boundary are carried over and
+ * solved together with the points of the next slab that are within d of it.
+ * Since d only shrinks, the carried points stay few.
+ *
+ * A slab holds slabPoints points on average; many points with the same x can
+ * make one slab larger, since points with equal x always share a slab.
+ */
+public class OutOfCoreClosestPair {
+
+    private static final int SAMPLES_PER_SLAB = 64;
+
+    private final int slabPoints;
+    private final Path workDirectory;
+
+    /**
+     * @param slabPoints the number of points that can be loaded at once
+     * @param workDirectory where the slab files are written (and deleted)
+     */
+    public OutOfCoreClosestPair(int slabPoints, Path workDirectory) {
+        this.slabPoints = slabPoints;
+        this.workDirectory = workDirectory;
+    }
+
+    /**
+     * Finds the closest pair of the points of a point file.
+     *
+     * @param file the point file
+     * @return a Pair of the closest points, or null for less than two points
+     */
+    public Pair closestPair(Path file) throws IOException {
+        try (MappedPointFile points = MappedPointFile.open(file)) {
+            if (points.size() <= slabPoints) {
+                return new ArrayClosestPair().closestPair(points.read(0, (int) points.size()));
+            }
+            double[] boundaries = boundaries(points);
+            Path slabDirectory = Files.createTempDirectory(workDirectory, "slabs");
+            try {
+                Path[] slabs = distribute(points, boundaries, slabDirectory);
+                return solveSlabs(slabs, boundaries);
+            } finally {
+                for (int slab = 0; slab <= boundaries.length; slab++) {
+                    Files.deleteIfExists(slabFile(slabDirectory, slab));
+                }
+                Files.deleteIfExists(slabDirectory);
+            }
+        }
+    }
+
+    /**
+     * Picks the x boundaries between the slabs from a sample of the points.
+     * Slab i holds the points with boundaries[i - 1] <= x < boundaries[i].
+     */
+    private double[] boundaries(MappedPointFile points) {
+        long numPoints = points.size();
+        int numSlabs = (int) Math.min(Integer.MAX_VALUE / SAMPLES_PER_SLAB, (numPoints + slabPoints - 1) / slabPoints);
+        double[] sample = new double[numSlabs * SAMPLES_PER_SLAB];
+        Random random = new Random(numPoints);
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = points.getX((long) (random.nextDouble() * numPoints));
+        }
+        Arrays.sort(sample);
+        double[] boundaries = new double[numSlabs - 1];
+        int count = 0;
+        for (int slab = 1; slab < numSlabs; slab++) {
+            double boundary = sample[slab * SAMPLES_PER_SLAB];
+            if (count == 0 || boundary > boundaries[count - 1]) {
+                boundaries[count++] = boundary;
+            }
+        }
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    private Path[] distribute(MappedPointFile points, double[] boundaries, Path slabDirectory) throws IOException {
+        int numSlabs = boundaries.length + 1;
+        Path[] slabs = new Path[numSlabs];
+        MappedPointFile.Writer[] writers = new MappedPointFile.Writer[numSlabs];
+        try {
+            for (int slab = 0; slab < numSlabs; slab++) {
+                slabs[slab] = slabFile(slabDirectory, slab);
+                writers[slab] = new MappedPointFile.Writer(slabs[slab]);
+            }
+            for (long i = 0; i < points.size(); i++) {
+                double x = points.getX(i);
+                int slab = Arrays.binarySearch(boundaries, x);
+                slab = slab >= 0 ? slab + 1 : -slab - 1;
+                writers[slab].append(x, points.getY(i));
+            }
+        } finally {
+            for (MappedPointFile.Writer writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return slabs;
+    }
+
+    private Pair solveSlabs(Path[] slabs, double[] boundaries) throws IOException {
+        ArrayClosestPair engine = new ArrayClosestPair();
+        Pair closestpair = null;
+        double dmin = Double.POSITIVE_INFINITY;
+        PointStore carried = new PointStore();
+
+        for (int slab = 0; slab < slabs.length; slab++) {
+            PointStore points;
+            try (MappedPointFile file = MappedPointFile.open(slabs[slab])) {
+                if (file.size() > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Slab " + slab + " has too many points with the same x");
+                }
+                points = file.read(0, (int) file.size());
+            }
+
+            Pair slabMin = engine.closestPair(points);
+            if (slabMin != null && slabMin.getDistance() < dmin) {
+                closestpair = slabMin;
+                dmin = slabMin.getDistance();
+            }
+
+            // Pairs across the left boundary of this slab
+            if (slab > 0 && carried.size() > 0) {
+                double boundary = boundaries[slab - 1];
+                PointStore strip = new PointStore(carried.size() + 16);
+                for (int i = 0; i < carried.size(); i++) {
+                    strip.add(carried.xs[i], carried.ys[i]);
+                }
+                for (int i = 0; i < points.size(); i++) {
+                    if (points.xs[i] - boundary < dmin) {
+                        strip.add(points.xs[i], points.ys[i]);
+                    }
+                }
+                Pair stripMin = engine.closestPair(strip);
+                if (stripMin != null && stripMin.getDistance() < dmin) {
+                    closestpair = stripMin;
+                    dmin = stripMin.getDistance();
+                }
+            }
+
+            // Keep the points that are within dmin of the right boundary
+            if (slab < boundaries.length) {
+                double boundary = boundaries[slab];
+                PointStore next = new PointStore();
+                for (int i = 0; i < carried.size(); i++) {
+                    if (boundary - carried.xs[i] < dmin) {
+                        next.add(carried.xs[i], carried.ys[i]);
+                    }
+                }
+                for (int i = 0; i < points.size(); i++) {
+                    if (boundary - points.xs[i] < dmin) {
+                        next.add(points.xs[i], points.ys[i]);
+                    }
+                }
+                carried = next;
+            }
+        }
+        return closestpair;
+    }
+
+    private static Path slabFile(Path slabDirectory, int slab) {
+        return slabDirectory.resolve("slab-" + slab + ".bin");
+    }
+}
@@ -0,0 +1,97 @@
+package Analusi;
+
+import java.util.Arrays;
+
+/**
+ * A compact list of pairs of point indices with their L2 distance, used by
+ * queries that can return many pairs instead of allocating a Pair for every
+ * one of them. The indices refer to the point set the query was run on.
+ */
+public class PairList {
+
+    private int[] firsts;
+    private int[] seconds;
+    private double[] distances;
+    private int size;
+
+    public PairList() {
+        this(16);
+    }
+
+    public PairList(int capacity) {
+        capacity = Math.max(capacity, 2);
+        firsts = new int[capacity];
+        seconds = new int[capacity];
+        distances = new double[capacity];
+    }
+
+    public void add(int first, int second, double distance) {
+        if (size == firsts.length) {
+            int capacity = size + (size >> 1);
+            firsts = Arrays.copyOf(firsts, capacity);
+            seconds = Arrays.copyOf(seconds, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+        }
+        firsts[size] = first;
+        seconds[size] = second;
+        distances[size] = distance;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getFirst(int index) {
+        return firsts[index];
+    }
+
+    public int getSecond(int index) {
+        return seconds[index];
+    }
+
+    public double getDistance(int index) {
+        return distances[index];
+    }
+
+    /**
+     * Sorts the pairs by increasing distance and keeps the first maxSize of
+     * them. Pairs with equal distances keep their order.
+     *
+     * @param maxSize the number of pairs to keep
+     */
+    public void sortByDistance(int maxSize) {
+        long[] keys = new long[size];
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = RadixSort.sortableBits(distances[i]);
+            positions[i] = i;
+        }
+        RadixSort.sort(keys, positions, size, new long[size], new int[size]);
+        int newSize = Math.min(size, maxSize);
+        int[] sortedFirsts = new int[Math.max(newSize, 2)];
+        int[] sortedSeconds = new int[sortedFirsts.length];
+        double[] sortedDistances = new double[sortedFirsts.length];
+        for (int i = 0; i < newSize; i++) {
+            sortedFirsts[i] = firsts[positions[i]];
+            sortedSeconds[i] = seconds[positions[i]];
+            sortedDistances[i] = distances[positions[i]];
+        }
+        firsts = sortedFirsts;
+        seconds = sortedSeconds;
+        distances = sortedDistances;
+        size = newSize;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(firsts[i]).append('-').append(seconds[i]).append(" : ").append(distances[i]);
+        }
+        return builder.append(']').toString();
+    }
+}
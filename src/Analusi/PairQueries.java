@@ -0,0 +1,280 @@
+package Analusi;
+
+import java.util.List;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * Queries that return more than the single closest pair: every pair within a
+ * radius and the k closest pairs. Both work on a hash grid (see CellGrid)
+ * instead of comparing all the pairs, so their cost depends on the number of
+ * pairs they return rather than on n^2.
+ */
+public class PairQueries {
+
+    // Same as in GridClosestPair: cells a little larger than the radius, so
+    // rounding never puts two points within the radius two cells apart.
+    private static final double CELL_SLACK = 1 + 1e-9;
+
+    private PairQueries() {
+    }
+
+    /**
+     * Finds every pair of points with distance at most radius. Every pair is
+     * reported once, with the smaller index second.
+     *
+     * @param store the points to be examined
+     * @param radius the largest distance of a reported pair
+     * @return the pairs, in no particular order
+     */
+    public static PairList pairsWithin(PointStore store, double radius) {
+        PairList pairs = new PairList();
+        scan(store, radius, pairs::add, Long.MAX_VALUE);
+        return pairs;
+    }
+
+    public static PairList pairsWithin(List<Point> points, double radius) {
+        return pairsWithin(PointStore.fromPoints(points), radius);
+    }
+
+    /**
+     * Finds the k closest pairs of points (fewer if there are less than k
+     * pairs). The search starts from the closest distance between two
+     * different points, where no cell of the grid holds more than a few
+     * points, and doubles the radius until it holds k pairs. Doubling the
+     * radius at most multiplies the number of pairs within it by a constant
+     * (plus n), so the last radius holds O(n + k) pairs, and of those only the
+     * k closest are kept.
+     *
+     * @param store the points to be examined
+     * @param k the number of pairs
+     * @return the pairs, sorted by increasing distance
+     */
+    public static PairList kClosestPairs(PointStore store, int k) {
+        int numPoints = store.size();
+        long allPairs = (long) numPoints * (numPoints - 1) / 2;
+        if (k <= 0 || numPoints < 2) {
+            return new PairList();
+        }
+        if (k > allPairs) {
+            k = (int) allPairs;
+        }
+
+        double radius = 0;
+        if (scan(store, 0, null, k) < k) {
+            PointStore distinct = distinctPoints(store);
+            // Less than two different points would make every pair a pair of
+            // equal points, and the scan above would have found k of them
+            radius = new ArrayClosestPair().closestPair(distinct).getDistance();
+            while (!Double.isInfinite(radius) && scan(store, radius, null, k) < k) {
+                radius *= 2;
+            }
+        }
+
+        KClosestPairs closest = new KClosestPairs(k);
+        scan(store, radius, closest::offer, Long.MAX_VALUE);
+        return closest.toPairList();
+    }
+
+    public static PairList kClosestPairs(List<Point> points, int k) {
+        return kClosestPairs(PointStore.fromPoints(points), k);
+    }
+
+    /**
+     * Receives the pairs found by a scan.
+     */
+    private interface PairConsumer {
+        void accept(int first, int second, double distance);
+    }
+
+    /**
+     * The k closest pairs offered so far, in a max heap on the distance so the
+     * farthest one is the one replaced.
+     */
+    private static final class KClosestPairs {
+        private final int[] firsts;
+        private final int[] seconds;
+        private final double[] distances;
+        private int size;
+
+        KClosestPairs(int k) {
+            firsts = new int[k];
+            seconds = new int[k];
+            distances = new double[k];
+        }
+
+        void offer(int first, int second, double distance) {
+            int position;
+            if (size < distances.length) {
+                // Sift up from the new leaf
+                position = size++;
+                while (position > 0 && distances[(position - 1) / 2] < distance) {
+                    move((position - 1) / 2, position);
+                    position = (position - 1) / 2;
+                }
+            } else if (distance < distances[0]) {
+                // Sift down from the root, which is dropped
+                position = 0;
+                while (true) {
+                    int child = 2 * position + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && distances[child + 1] > distances[child]) {
+                        child++;
+                    }
+                    if (distances[child] <= distance) {
+                        break;
+                    }
+                    move(child, position);
+                    position = child;
+                }
+            } else {
+                return;
+            }
+            firsts[position] = first;
+            seconds[position] = second;
+            distances[position] = distance;
+        }
+
+        private void move(int from, int to) {
+            firsts[to] = firsts[from];
+            seconds[to] = seconds[from];
+            distances[to] = distances[from];
+        }
+
+        PairList toPairList() {
+            PairList pairs = new PairList(size);
+            for (int i = 0; i < size; i++) {
+                pairs.add(firsts[i], seconds[i], distances[i]);
+            }
+            pairs.sortByDistance(size);
+            return pairs;
+        }
+    }
+
+    /**
+     * Inserts the points into a grid with cells of the size of the radius one
+     * by one, checking every point against the 3x3 cells around it first.
+     * Stops after limit pairs were found. A radius of 0 is left to
+     * scanEqualPoints, as cells of size 0 do not exist.
+     *
+     * @param pairs receives the pairs, or null to only count them
+     * @return the number of pairs found
+     */
+    private static long scan(PointStore store, double radius, PairConsumer pairs, long limit) {
+        if (!(radius >= 0)) {
+            return 0;
+        }
+        if (radius == 0) {
+            return scanEqualPoints(store, pairs, limit);
+        }
+        int numPoints = store.size();
+        double[] xs = store.xs;
+        double[] ys = store.ys;
+        // The squared test only filters; a pair is in when its distance, as
+        // computed by ClosestPair.hypot, is at most the radius. Below
+        // MIN_NORMAL squares lose their precision, so it lets those through.
+        double radiusSquared = Math.max(radius * radius * CELL_SLACK, Double.MIN_NORMAL);
+        CellGrid grid = new CellGrid(numPoints);
+        grid.reset(radius * CELL_SLACK, numPoints);
+        long found = 0;
+        for (int point = 0; point < numPoints; point++) {
+            double x = xs[point];
+            double y = ys[point];
+            long cx = grid.cell(x);
+            long cy = grid.cell(y);
+            // Looping over offsets keeps the bounds from overflowing
+            for (int ox = -1; ox <= 1; ox++) {
+                for (int oy = -1; oy <= 1; oy++) {
+                    for (int other = grid.head(cx + ox, cy + oy); other >= 0; other = grid.next[other]) {
+                        double dx = x - xs[other];
+                        double dy = y - ys[other];
+                        if (dx * dx + dy * dy > radiusSquared) {
+                            continue;
+                        }
+                        double distance = ClosestPair.hypot(dx, dy);
+                        if (distance <= radius) {
+                            if (pairs != null) {
+                                pairs.accept(point, other, distance);
+                            }
+                            if (++found >= limit) {
+                                return found;
+                            }
+                        }
+                    }
+                }
+            }
+            grid.insert(point, cx, cy);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the pairs of equal points: sorted by y and then, stably, by x,
+     * the copies of a point are next to each other in index order.
+     */
+    private static long scanEqualPoints(PointStore store, PairConsumer pairs, long limit) {
+        int numPoints = store.size();
+        int[] order = sortedByPoint(store);
+        long found = 0;
+        for (int start = 0, end; start < numPoints; start = end) {
+            double x = store.xs[order[start]];
+            double y = store.ys[order[start]];
+            end = start + 1;
+            while (end < numPoints && store.xs[order[end]] == x && store.ys[order[end]] == y) {
+                end++;
+            }
+            for (int j = start + 1; j < end; j++) {
+                for (int i = start; i < j; i++) {
+                    if (pairs != null) {
+                        pairs.accept(order[j], order[i], 0);
+                    }
+                    if (++found >= limit) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return a store with one copy of every point of the given store
+     */
+    private static PointStore distinctPoints(PointStore store) {
+        int numPoints = store.size();
+        int[] order = sortedByPoint(store);
+        PointStore distinct = new PointStore(numPoints);
+        for (int position = 0; position < numPoints; position++) {
+            int index = order[position];
+            int previous = position > 0 ? order[position - 1] : -1;
+            if (previous < 0 || store.xs[index] != store.xs[previous] || store.ys[index] != store.ys[previous]) {
+                distinct.add(store.xs[index], store.ys[index]);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * @return the indices of the points sorted by y and then, stably, by x,
+     * with -0.0 taken as 0.0
+     */
+    private static int[] sortedByPoint(PointStore store) {
+        int numPoints = store.size();
+        long[] keys = new long[numPoints];
+        int[] order = new int[numPoints];
+        long[] keyBuffer = new long[numPoints];
+        int[] valueBuffer = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = RadixSort.sortableBits(store.ys[i] + 0.0);
+            order[i] = i;
+        }
+        RadixSort.sort(keys, order, numPoints, keyBuffer, valueBuffer);
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = RadixSort.sortableBits(store.xs[order[i]] + 0.0);
+        }
+        RadixSort.sort(keys, order, numPoints, keyBuffer, valueBuffer);
+        return order;
+    }
+}
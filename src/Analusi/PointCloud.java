@@ -0,0 +1,99 @@
+package Analusi;
+
+import java.util.Arrays;
+
+/**
+ * The class PointCloud keeps points of any dimension in one flat primitive
+ * array: the coordinates of point i are coordinates[i * dimension] up to
+ * coordinates[i * dimension + dimension - 1]. Like PointStore a point is
+ * identified by its index, and a point costs 8 * dimension bytes.
+ */
+public class PointCloud {
+
+    final int dimension;
+    double[] coordinates;
+    int size;
+
+    public PointCloud(int dimension) {
+        this(dimension, 16);
+    }
+
+    public PointCloud(int dimension, int capacity) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("The dimension must be at least 1");
+        }
+        this.dimension = dimension;
+        coordinates = new double[Math.max(capacity, 2) * dimension];
+    }
+
+    /**
+     * Wraps the given coordinates without copying them.
+     *
+     * @param dimension the number of coordinates of every point
+     * @param coordinates the coordinates of the points, point after point
+     */
+    public PointCloud(int dimension, double[] coordinates) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("The dimension must be at least 1");
+        }
+        if (coordinates.length % dimension != 0) {
+            throw new IllegalArgumentException("The length of coordinates must be a multiple of the dimension");
+        }
+        this.dimension = dimension;
+        this.coordinates = coordinates;
+        this.size = coordinates.length / dimension;
+    }
+
+    /**
+     * Copies the points of a store into a new two dimensional cloud, keeping
+     * their indices.
+     *
+     * @param store the points to be copied
+     * @return a cloud holding the same points in the same order
+     */
+    public static PointCloud fromStore(PointStore store) {
+        PointCloud cloud = new PointCloud(2, store.size());
+        for (int i = 0; i < store.size(); i++) {
+            cloud.coordinates[2 * i] = store.xs[i];
+            cloud.coordinates[2 * i + 1] = store.ys[i];
+        }
+        cloud.size = store.size();
+        return cloud;
+    }
+
+    /**
+     * Adds a point.
+     *
+     * @param point the coordinates of the point, as many as the dimension
+     */
+    public void add(double... point) {
+        if (point.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " coordinates, got " + point.length);
+        }
+        if ((size + 1) * dimension > coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, (size + (size >> 1) + 1) * dimension);
+        }
+        System.arraycopy(point, 0, coordinates, size * dimension, dimension);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public double get(int index, int axis) {
+        return coordinates[index * dimension + axis];
+    }
+
+    /**
+     * @param index the index of the point
+     * @return a copy of the coordinates of the point
+     */
+    public double[] getPoint(int index) {
+        return Arrays.copyOfRange(coordinates, index * dimension, (index + 1) * dimension);
+    }
+}
@@ -0,0 +1,237 @@
+package Analusi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * Seeded generator of large point sets for benchmarks and stress tests.
+ *
+ * The points are generated straight into the arrays of a PointStore, in
+ * chunks of CHUNK_SIZE points that are filled in parallel. Every chunk has its
+ * own SplittableRandom, split from the seed in chunk order before the chunks
+ * start, so the same seed gives the same points whatever the number of
+ * threads.
+ */
+public class PointGenerator {
+
+    public static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int CLUSTERS = 16;
+    private static final double CLUSTER_SIGMA = 0.01;
+    private static final int DUPLICATES_PER_POINT = 8;
+    private static final double TWO_POW_450 = Math.scalb(1.0, 450);
+    private static final double TWO_POW_N450 = Math.scalb(1.0, -450);
+
+    /**
+     * The shapes of the generated point sets.
+     */
+    public enum Distribution {
+
+        /**
+         * Uniform points in [0,1)^2, the same as ClosestPair.generatePoints.
+         */
+        UNIFORM {
+            @Override
+            void fill(SplittableRandom random, double[] shared, double[] xs, double[] ys, int from, int to, int numPoints) {
+                for (int i = from; i < to; i++) {
+                    xs[i] = random.nextDouble();
+                    ys[i] = random.nextDouble();
+                }
+            }
+        },
+        /**
+         * Gaussian clusters around 16 random centers in [0,1)^2, which gives
+         * uneven splits and crowded strips.
+         */
+        CLUSTERED {
+            @Override
+            double[] shared(SplittableRandom random, int numPoints) {
+                double[] centers = new double[2 * CLUSTERS];
+                for (int i = 0; i < centers.length; i++) {
+                    centers[i] = random.nextDouble();
+                }
+                return centers;
+            }
+
+            @Override
+            void fill(SplittableRandom random, double[] centers, double[] xs, double[] ys, int from, int to, int numPoints) {
+                for (int i = from; i < to; i++) {
+                    int cluster = random.nextInt(CLUSTERS);
+                    xs[i] = centers[2 * cluster] + CLUSTER_SIGMA * random.nextGaussian();
+                    ys[i] = centers[2 * cluster + 1] + CLUSTER_SIGMA * random.nextGaussian();
+                }
+            }
+        },
+        /**
+         * Points on the vertical line x = 0.5, so every point falls in the
+         * strip around the median.
+         */
+        LINE {
+            @Override
+            void fill(SplittableRandom random, double[] shared, double[] xs, double[] ys, int from, int to, int numPoints) {
+                for (int i = from; i < to; i++) {
+                    xs[i] = 0.5;
+                    ys[i] = random.nextDouble();
+                }
+            }
+        },
+        /**
+         * Points on the circle of radius 0.5 around (0.5, 0.5).
+         */
+        CIRCLE {
+            @Override
+            void fill(SplittableRandom random, double[] shared, double[] xs, double[] ys, int from, int to, int numPoints) {
+                for (int i = from; i < to; i++) {
+                    double angle = 2 * Math.PI * random.nextDouble();
+                    xs[i] = 0.5 + 0.5 * Math.cos(angle);
+                    ys[i] = 0.5 + 0.5 * Math.sin(angle);
+                }
+            }
+        },
+        /**
+         * Uniform points where every point is repeated 8 times on average:
+         * the points are drawn from a pool of numPoints / 8 distinct points,
+         * so the closest pair is at distance 0 and there are many equal pairs.
+         */
+        DUPLICATES {
+            @Override
+            double[] shared(SplittableRandom random, int numPoints) {
+                double[] pool = new double[2 * Math.max(numPoints / DUPLICATES_PER_POINT, 1)];
+                for (int i = 0; i < pool.length; i++) {
+                    pool[i] = random.nextDouble();
+                }
+                return pool;
+            }
+
+            @Override
+            void fill(SplittableRandom random, double[] pool, double[] xs, double[] ys, int from, int to, int numPoints) {
+                int distinct = pool.length / 2;
+                for (int i = from; i < to; i++) {
+                    int point = random.nextInt(distinct);
+                    xs[i] = pool[2 * point];
+                    ys[i] = pool[2 * point + 1];
+                }
+            }
+        },
+        /**
+         * The integer lattice points of a square of side ceil(sqrt(numPoints)),
+         * row by row, so every point has neighbours at distance exactly 1 and
+         * the closest pair is a tie of about 2 * numPoints pairs.
+         */
+        LATTICE {
+            @Override
+            void fill(SplittableRandom random, double[] shared, double[] xs, double[] ys, int from, int to, int numPoints) {
+                int side = (int) Math.ceil(Math.sqrt(numPoints));
+                for (int i = from; i < to; i++) {
+                    xs[i] = i % side;
+                    ys[i] = i / side;
+                }
+            }
+        },
+        /**
+         * Uniform points in [0,4)^2 scaled by 2^450, so the coordinate
+         * differences are on both sides of the upper rescale threshold of
+         * ClosestPair.hypot.
+         */
+        HUGE {
+            @Override
+            void fill(SplittableRandom random, double[] shared, double[] xs, double[] ys, int from, int to, int numPoints) {
+                for (int i = from; i < to; i++) {
+                    xs[i] = 4 * random.nextDouble() * TWO_POW_450;
+                    ys[i] = 4 * random.nextDouble() * TWO_POW_450;
+                }
+            }
+        },
+        /**
+         * Uniform points in [0,4)^2 scaled by 2^-450, so the coordinate
+         * differences are on both sides of the lower rescale threshold of
+         * ClosestPair.hypot.
+         */
+        TINY {
+            @Override
+            void fill(SplittableRandom random, double[] shared, double[] xs, double[] ys, int from, int to, int numPoints) {
+                for (int i = from; i < to; i++) {
+                    xs[i] = 4 * random.nextDouble() * TWO_POW_N450;
+                    ys[i] = 4 * random.nextDouble() * TWO_POW_N450;
+                }
+            }
+        };
+
+        /**
+         * Draws the values that all the chunks share (cluster centers and
+         * the like) before the chunks are filled.
+         */
+        double[] shared(SplittableRandom random, int numPoints) {
+            return null;
+        }
+
+        /**
+         * Fills the points [from, to) of a set of numPoints points.
+         */
+        abstract void fill(SplittableRandom random, double[] shared, double[] xs, double[] ys, int from, int to, int numPoints);
+    }
+
+    private final long seed;
+
+    /**
+     * @param seed the seed of the generated point sets
+     */
+    public PointGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Generates a point set. Every call with the same distribution and number
+     * of points returns the same points.
+     *
+     * @param distribution the shape of the point set
+     * @param numPoints defines the number of points to be generated
+     * @return a new store with the points
+     */
+    public PointStore generate(Distribution distribution, int numPoints) {
+        double[] xs = new double[numPoints];
+        double[] ys = new double[numPoints];
+        SplittableRandom root = new SplittableRandom(seed);
+        double[] shared = distribution.shared(root, numPoints);
+        int numChunks = (numPoints + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom[] randoms = new SplittableRandom[numChunks];
+        for (int chunk = 0; chunk < numChunks; chunk++) {
+            randoms[chunk] = root.split();
+        }
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            int from = chunk * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, numPoints);
+            distribution.fill(randoms[chunk], shared, xs, ys, from, to, numPoints);
+        });
+        return new PointStore(xs, ys);
+    }
+
+    /**
+     * Same as generate, but returns the points as a List, for the engines that
+     * take Point objects.
+     *
+     * @param distribution the shape of the point set
+     * @param numPoints defines the number of points to be generated
+     * @return a List of the points
+     */
+    public List<Point> generatePoints(Distribution distribution, int numPoints) {
+        PointStore store = generate(distribution, numPoints);
+        Point[] points = new Point[numPoints];
+        IntStream.range(0, (numPoints + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+            int to = Math.min((chunk + 1) * CHUNK_SIZE, numPoints);
+            for (int i = chunk * CHUNK_SIZE; i < to; i++) {
+                points[i] = new Point(store.xs[i], store.ys[i]);
+            }
+        });
+        return new ArrayList<>(Arrays.asList(points));
+    }
+}
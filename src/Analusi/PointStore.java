@@ -0,0 +1,100 @@
+package Analusi;
+
+import java.util.Arrays;
+import java.util.List;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * The class PointStore keeps points of the Cartesian plane as two parallel
+ * primitive arrays (structure of arrays) instead of one Point object per
+ * point. A point is identified by its index in the store, so every point costs
+ * 16 bytes and the coordinate loops of the engines stay sequential in memory.
+ */
+public class PointStore {
+
+    double[] xs;
+    double[] ys;
+    int size;
+
+    public PointStore() {
+        this(16);
+    }
+
+    public PointStore(int capacity) {
+        xs = new double[Math.max(capacity, 2)];
+        ys = new double[Math.max(capacity, 2)];
+    }
+
+    /**
+     * Wraps the given coordinate arrays without copying them.
+     *
+     * @param xs the x coordinates
+     * @param ys the y coordinates, same length as xs
+     */
+    public PointStore(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("xs and ys must have the same length");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.size = xs.length;
+    }
+
+    /**
+     * Copies the coordinates of a list of points into a new store. The index of
+     * every point in the store is its index in the list.
+     *
+     * @param points the points to be copied
+     * @return a store holding the same points in the same order
+     */
+    public static PointStore fromPoints(List<Point> points) {
+        int numPoints = points.size();
+        PointStore store = new PointStore(numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            Point point = points.get(i);
+            store.xs[i] = point.getX();
+            store.ys[i] = point.getY();
+        }
+        store.size = numPoints;
+        return store;
+    }
+
+    public void add(double x, double y) {
+        if (size == xs.length) {
+            int capacity = xs.length + (xs.length >> 1);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public void add(Point point) {
+        add(point.getX(), point.getY());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * Creates a Point object for the point at the given index. Meant for
+     * building results, not for the hot loops.
+     *
+     * @param index the index of the point in the store
+     * @return a new Point with the coordinates of the stored point
+     */
+    public Point getPoint(int index) {
+        return new Point(xs[index], ys[index]);
+    }
+}
@@ -0,0 +1,200 @@
+package Analusi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The classic O(n*log(n)) divide and conquer, which actually uses the list
+ * presorted by y instead of sorting strips again at every level.
+ *
+ * The recursion splits the x-sorted points at the median; the y-sorted points
+ * of a range are split alongside it with a stable partition, so both halves
+ * get their points in y order in O(n). The y orders of the ranges that are
+ * active at the same time (one per depth) are kept in one buffer per depth,
+ * of half the size of the one above, so the whole recursion allocates about 2n
+ * references once. After both halves are solved the strip of the points closer
+ * than dmin to the median is taken from the range's y order, still sorted,
+ * and every strip point is compared with at most the next 7 strip points.
+ *
+ * Points are split by (x, y), so points with the same x as the median can go
+ * either way; equal points are divided between the halves by counting them.
+ */
+public class PresortedClosestPair extends ClosestPair {
+
+    private static final Comparator<Point> BY_Y = Comparator.comparingDouble(Point::getY);
+
+    private Point[] pointsByX;
+    private Point[][] levels;
+    private Pair closestpair;
+
+    /**
+     * Solves points given by their indices into coordinate arrays, comparing
+     * hypot distances. It is the fallback of the engines that compare squared
+     * distances for the inputs where those overflow or underflow (see
+     * ClosestPair.isExactSquare).
+     *
+     * @param xs the x coordinates
+     * @param ys the y coordinates
+     * @param indices the points to be examined, in any order
+     * @param count the number of points, at least two
+     * @return the indices of the closest points and their distance
+     */
+    static IndexPair solve(double[] xs, double[] ys, int[] indices, int count) {
+        List<Point> points = new ArrayList<>(count);
+        Map<Point, Integer> ids = new IdentityHashMap<>(count);
+        for (int k = 0; k < count; k++) {
+            Point point = new Point(xs[indices[k]], ys[indices[k]]);
+            points.add(point);
+            ids.put(point, indices[k]);
+        }
+        Pair pair = new PresortedClosestPair().initializeDivideAndConquer(points);
+        return new IndexPair(ids.get(pair.getPoint1()), ids.get(pair.getPoint2()), pair.getDistance());
+    }
+
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        int numPoints = pointsSortedByX.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        pointsByX = pointsSortedByX.toArray(new Point[0]);
+        orderTiesByY(pointsByX);
+
+        int depth = 1;
+        for (int size = numPoints; size > 3; size = (size + 1) / 2) {
+            depth++;
+        }
+        levels = new Point[depth][];
+        levels[0] = pointsSortedByY.toArray(new Point[0]);
+        for (int level = 1, size = (numPoints + 1) / 2; level < depth; level++, size = (size + 1) / 2) {
+            levels[level] = new Point[size];
+        }
+
+        closestpair = new Pair(pointsByX[0], pointsByX[1]);
+        findClosestPair(0, 0, numPoints);
+        Pair result = closestpair;
+        pointsByX = null;
+        levels = null;
+        closestpair = null;
+        return result;
+    }
+
+    /**
+     * Solves the points pointsByX[lo, hi), whose y order is in the first
+     * hi - lo entries of levels[depth].
+     */
+    private void findClosestPair(int depth, int lo, int hi) {
+        if (hi - lo <= 3) {
+            for (int i = lo; i < hi - 1; i++) {
+                for (int j = i + 1; j < hi; j++) {
+                    check(pointsByX[i], pointsByX[j]);
+                }
+            }
+            return;
+        }
+
+        int size = hi - lo;
+        int mid = (lo + hi) >>> 1;
+        Point median = pointsByX[mid];
+        Point[] byY = levels[depth];
+        Point[] half = levels[depth + 1];
+
+        // The points equal to the median that belong to the left half
+        int equalLeft = 0;
+        for (int k = mid - 1; k >= lo && compare(pointsByX[k], median) == 0; k--) {
+            equalLeft++;
+        }
+
+        // Left half, in y order
+        int count = 0;
+        int equalSeen = 0;
+        for (int k = 0; k < size; k++) {
+            Point point = byY[k];
+            int cmp = compare(point, median);
+            if (cmp < 0 || (cmp == 0 && equalSeen++ < equalLeft)) {
+                half[count++] = point;
+            }
+        }
+        findClosestPair(depth + 1, lo, mid);
+
+        // Right half, in y order
+        count = 0;
+        equalSeen = 0;
+        for (int k = 0; k < size; k++) {
+            Point point = byY[k];
+            int cmp = compare(point, median);
+            if (cmp > 0 || (cmp == 0 && equalSeen++ >= equalLeft)) {
+                half[count++] = point;
+            }
+        }
+        findClosestPair(depth + 1, mid, hi);
+
+        // The strip around the median, in y order (this range's buffer is
+        // not needed anymore, so the strip is compacted into it)
+        double xsplit = median.getX();
+        double dmin = closestpair.getDistance();
+        int stripSize = 0;
+        for (int k = 0; k < size; k++) {
+            Point point = byY[k];
+            if (Math.abs(point.getX() - xsplit) < dmin) {
+                byY[stripSize++] = point;
+            }
+        }
+        for (int i = 0; i < stripSize - 1; i++) {
+            Point point = byY[i];
+            int last = Math.min(stripSize - 1, i + 7);
+            for (int j = i + 1; j <= last; j++) {
+                if (byY[j].getY() - point.getY() >= closestpair.getDistance()) {
+                    break;
+                }
+                check(point, byY[j]);
+            }
+        }
+    }
+
+    private void check(Point point1, Point point2) {
+        double distance = distance(point1, point2);
+        if (distance < closestpair.getDistance()) {
+            closestpair.update(point1, point2, distance);
+        }
+    }
+
+    /**
+     * Orders points by x and then by y.
+     */
+    private static int compare(Point point1, Point point2) {
+        if (point1.getX() < point2.getX()) {
+            return -1;
+        }
+        if (point1.getX() > point2.getX()) {
+            return 1;
+        }
+        if (point1.getY() < point2.getY()) {
+            return -1;
+        }
+        if (point1.getY() > point2.getY()) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Sorts the runs of points with equal x by y, so the x-sorted array is
+     * sorted by (x, y). Costs O(n) when no two points share an x.
+     */
+    private static void orderTiesByY(Point[] points) {
+        int start = 0;
+        for (int i = 1; i <= points.length; i++) {
+            if (i == points.length || points[i].getX() != points[start].getX()) {
+                if (i - start > 1) {
+                    Arrays.sort(points, start, i, BY_Y);
+                }
+                start = i;
+            }
+        }
+    }
+}
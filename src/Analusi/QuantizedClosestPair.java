@@ -0,0 +1,308 @@
+package Analusi;
+
+import java.util.List;
+
+/**
+ * Closest pair of points on a lattice (see QuantizedPointStore), with exact
+ * arithmetic.
+ *
+ * The points are sorted by x with integer keys and solved bottom up like
+ * BottomUpClosestPair, but squared distances are longs, so they are exact and
+ * never rounded. That makes ties well defined: of all the pairs at the closest
+ * distance the result is the one with the smallest first index and, among
+ * those, the smallest second index (first &lt; second). The pruning of the
+ * strips keeps pairs at exactly the best distance so every tie is seen; once
+ * the best distance is 0 the rest of the search is replaced by one pass over
+ * the points sorted by (x, y), which finds the first pair of equal points
+ * without comparing every copy of a point with every other.
+ *
+ * Only the result is turned back into doubles. An instance should not be used
+ * by more than one thread at a time.
+ */
+public class QuantizedClosestPair extends ClosestPair {
+
+    static final int LEAF_SIZE = 16;
+
+    private final double scale;
+
+    // The points sorted by x; positions below are positions in this order
+    private int[] sortedXs = new int[0];
+    private int[] sortedYs = new int[0];
+    // The original index of the point at every position
+    private int[] indices = new int[0];
+    // Runs of positions in y order, merged back and forth
+    private int[] runs = new int[0];
+    private int[] merged = new int[0];
+    // The radix sort
+    private long[] keys = new long[0];
+    private long[] keyBuffer = new long[0];
+    private int[] valueBuffer = new int[0];
+    // The strip of the current merge
+    private int[] stripXs = new int[0];
+    private int[] stripYs = new int[0];
+    private int[] stripPositions = new int[0];
+
+    // The best pair, as original indices with bestFirst < bestSecond
+    private long bestDistanceSquared;
+    private int bestFirst;
+    private int bestSecond;
+
+    /**
+     * @param scale the lattice step used to quantize the lists given to
+     * initializeDivideAndConquer and divideAndConquer
+     */
+    public QuantizedClosestPair(double scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * Finds the closest pair of the points in the given store.
+     *
+     * @param store the points to be examined
+     * @return the closest pair, in the units of the scale, or null for less
+     * than two points
+     */
+    public Pair closestPair(QuantizedPointStore store) {
+        if (!solve(store)) {
+            return null;
+        }
+        return new Pair(store.getPoint(bestFirst), store.getPoint(bestSecond));
+    }
+
+    /**
+     * Finds the closest pair of the points in the given store.
+     *
+     * @param store the points to be examined
+     * @return the indices of the closest points, first &lt; second, and their
+     * distance in the units of the scale, or null for less than two points
+     */
+    public IndexPair closestIndexPair(QuantizedPointStore store) {
+        if (!solve(store)) {
+            return null;
+        }
+        return new IndexPair(bestFirst, bestSecond, Math.sqrt((double) bestDistanceSquared) * store.getScale());
+    }
+
+    /**
+     * @return the exact squared distance of the last result, in lattice steps
+     */
+    public long getDistanceSquared() {
+        return bestDistanceSquared;
+    }
+
+    /**
+     * Quantizes the points with the scale of this instance. The points of the
+     * result are points of the list, the closest ones on the lattice.
+     */
+    @Override
+    public Pair initializeDivideAndConquer(List<Point> points) {
+        QuantizedPointStore store = QuantizedPointStore.quantize(PointStore.fromPoints(points), scale);
+        if (!solve(store)) {
+            return null;
+        }
+        return new Pair(points.get(bestFirst), points.get(bestSecond));
+    }
+
+    /**
+     * Only the first list is used, its order does not matter.
+     */
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        return initializeDivideAndConquer(pointsSortedByX);
+    }
+
+    private void ensureCapacity(int numPoints) {
+        if (sortedXs.length < numPoints) {
+            sortedXs = new int[numPoints];
+            sortedYs = new int[numPoints];
+            indices = new int[numPoints];
+            runs = new int[numPoints];
+            merged = new int[numPoints];
+            keys = new long[numPoints];
+            keyBuffer = new long[numPoints];
+            valueBuffer = new int[numPoints];
+            stripXs = new int[numPoints];
+            stripYs = new int[numPoints];
+            stripPositions = new int[numPoints];
+        }
+    }
+
+    /**
+     * @return false if the store has less than two points
+     */
+    private boolean solve(QuantizedPointStore store) {
+        int numPoints = store.size();
+        if (numPoints < 2) {
+            return false;
+        }
+        ensureCapacity(numPoints);
+        // Offset to non negative keys, so the sort skips the 32 high bits
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = (long) store.xs[i] - Integer.MIN_VALUE;
+            indices[i] = i;
+        }
+        RadixSort.sort(keys, indices, numPoints, keyBuffer, valueBuffer);
+        for (int position = 0; position < numPoints; position++) {
+            sortedXs[position] = store.xs[indices[position]];
+            sortedYs[position] = store.ys[indices[position]];
+        }
+
+        bestDistanceSquared = Long.MAX_VALUE;
+        bestFirst = -1;
+        bestSecond = -1;
+        if (!mergeRuns(numPoints)) {
+            firstEqualPair(store);
+        }
+        return true;
+    }
+
+    /**
+     * Runs the bottom up search over the first numPoints positions.
+     *
+     * @return false if it stopped on two equal points
+     */
+    private boolean mergeRuns(int numPoints) {
+        int[] xs = sortedXs;
+        int[] ys = sortedYs;
+
+        // The leaves: bruteforced, then put in y order
+        int[] source = runs;
+        for (int lo = 0; lo < numPoints; lo += LEAF_SIZE) {
+            int hi = Math.min(lo + LEAF_SIZE, numPoints);
+            for (int i = lo; i < hi - 1; i++) {
+                for (int j = i + 1; j < hi; j++) {
+                    long dx = xs[j] - xs[i];
+                    long dy = ys[j] - ys[i];
+                    consider(dx * dx + dy * dy, i, j);
+                }
+            }
+            if (bestDistanceSquared == 0) {
+                return false;
+            }
+            for (int i = lo; i < hi; i++) {
+                int k = i - 1;
+                while (k >= lo && ys[source[k]] > ys[i]) {
+                    source[k + 1] = source[k];
+                    k--;
+                }
+                source[k + 1] = i;
+            }
+        }
+
+        int[] target = merged;
+        for (int width = LEAF_SIZE; width < numPoints; width *= 2) {
+            for (int lo = 0; lo < numPoints; lo += 2 * width) {
+                int mid = Math.min(lo + width, numPoints);
+                int hi = Math.min(lo + 2 * width, numPoints);
+                if (mid == hi) {
+                    System.arraycopy(source, lo, target, lo, hi - lo);
+                    continue;
+                }
+                int left = lo;
+                int right = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (right >= hi || (left < mid && ys[source[left]] <= ys[source[right]])) {
+                        target[k] = source[left++];
+                    } else {
+                        target[k] = source[right++];
+                    }
+                }
+                if (!scanStrip(target, lo, hi, xs[mid])) {
+                    return false;
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        runs = source;
+        merged = target;
+        return true;
+    }
+
+    /**
+     * Scans the points of a merged run that are at most the best distance
+     * away from the line x = xsplit, in y order.
+     *
+     * @return false if it stopped on two equal points
+     */
+    private boolean scanStrip(int[] run, int lo, int hi, int xsplit) {
+        int[] xs = sortedXs;
+        int[] ys = sortedYs;
+        int count = 0;
+        for (int k = lo; k < hi; k++) {
+            int position = run[k];
+            long dx = xs[position] - xsplit;
+            if (dx * dx <= bestDistanceSquared) {
+                stripXs[count] = xs[position];
+                stripYs[count] = ys[position];
+                stripPositions[count] = position;
+                count++;
+            }
+        }
+        for (int i = 0; i < count - 1; i++) {
+            int x = stripXs[i];
+            int y = stripYs[i];
+            for (int j = i + 1; j < count; j++) {
+                long dy = stripYs[j] - y;
+                if (dy * dy > bestDistanceSquared) {
+                    break;
+                }
+                long dx = stripXs[j] - x;
+                consider(dx * dx + dy * dy, stripPositions[i], stripPositions[j]);
+            }
+            if (bestDistanceSquared == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the pair of the given positions if it comes before the best pair:
+     * closer, or as close with smaller indices.
+     */
+    private void consider(long distanceSquared, int position1, int position2) {
+        if (distanceSquared > bestDistanceSquared) {
+            return;
+        }
+        int first = Math.min(indices[position1], indices[position2]);
+        int second = Math.max(indices[position1], indices[position2]);
+        if (distanceSquared < bestDistanceSquared || first < bestFirst
+                || (first == bestFirst && second < bestSecond)) {
+            bestDistanceSquared = distanceSquared;
+            bestFirst = first;
+            bestSecond = second;
+        }
+    }
+
+    /**
+     * Finds the first pair of equal points, the store having some. Sorted by
+     * (x, y) with a stable sort, the copies of a point are next to each other
+     * in index order, so the first pair of every point is two neighbours.
+     */
+    private void firstEqualPair(QuantizedPointStore store) {
+        int numPoints = store.size();
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = ((long) store.xs[i] - Integer.MIN_VALUE) << 32 | ((long) store.ys[i] - Integer.MIN_VALUE);
+            indices[i] = i;
+        }
+        RadixSort.sort(keys, indices, numPoints, keyBuffer, valueBuffer);
+        bestFirst = Integer.MAX_VALUE;
+        bestSecond = Integer.MAX_VALUE;
+        for (int position = 1; position < numPoints; position++) {
+            if (keys[position] == keys[position - 1]) {
+                // Only the first two copies of a point can make its first pair
+                if (position < 2 || keys[position - 2] != keys[position]) {
+                    int first = indices[position - 1];
+                    int second = indices[position];
+                    if (first < bestFirst || (first == bestFirst && second < bestSecond)) {
+                        bestFirst = first;
+                        bestSecond = second;
+                    }
+                }
+            }
+        }
+        bestDistanceSquared = 0;
+    }
+}
@@ -0,0 +1,352 @@
+package Analusi;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * LSD radix sort over the IEEE-754 bit patterns of double coordinates.
+ *
+ * A double is turned into a long key that orders the same way as the number:
+ * for positive numbers only the sign bit is flipped, for negative numbers all
+ * the bits are flipped. The keys are then sorted 11 bits at a time, carrying an
+ * int payload (usually the index of the point) along. Every pass is stable, so
+ * equal coordinates keep the order they had before, just like Collections.sort.
+ * Passes in which all the keys share the same digit (the sign and exponent bits
+ * of points in a small range) are skipped.
+ */
+public class RadixSort {
+
+    private static final int BITS = 11;
+    private static final int RADIX = 1 << BITS;
+    private static final int MASK = RADIX - 1;
+    private static final int PASSES = (64 + BITS - 1) / BITS;
+    // Below this length the histograms cost more than a comparison sort
+    private static final int RADIX_THRESHOLD = 1024;
+    private static final int INSERTION_THRESHOLD = 16;
+    // Below this length the parallel sort is not worth the task overhead
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private RadixSort() {
+    }
+
+    /**
+     * Maps a double to a long whose unsigned order matches the order of the
+     * doubles (-0.0 is placed right before 0.0).
+     *
+     * @param value the coordinate
+     * @return the sortable key
+     */
+    public static long sortableBits(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+
+    /**
+     * Sorts the indices in indices[from, to) by the coordinates they point to.
+     *
+     * @param coordinates the coordinate of every point
+     * @param indices the indices to be sorted
+     * @param from first position to be sorted, inclusive
+     * @param to last position to be sorted, exclusive
+     */
+    public static void sortIndices(double[] coordinates, int[] indices, int from, int to) {
+        int length = to - from;
+        if (length < 2) {
+            return;
+        }
+        long[] keys = new long[length];
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            int index = indices[from + i];
+            keys[i] = sortableBits(coordinates[index]);
+            values[i] = index;
+        }
+        sort(keys, values, length, new long[length], new int[length]);
+        System.arraycopy(values, 0, indices, from, length);
+    }
+
+    /**
+     * Sorts the first length keys, moving the values along with them. The
+     * sorted result ends up in keys and values; the two buffers are scratch
+     * space of at least the same length.
+     */
+    static void sort(long[] keys, int[] values, int length, long[] keyBuffer, int[] valueBuffer) {
+        if (length < RADIX_THRESHOLD) {
+            mergeSort(keys, values, length, keyBuffer, valueBuffer);
+            return;
+        }
+        int[][] counts = new int[PASSES][RADIX];
+        for (int i = 0; i < length; i++) {
+            long key = keys[i];
+            for (int pass = 0; pass < PASSES; pass++) {
+                counts[pass][(int) (key >>> (pass * BITS)) & MASK]++;
+            }
+        }
+
+        long[] srcKeys = keys;
+        int[] srcValues = values;
+        long[] dstKeys = keyBuffer;
+        int[] dstValues = valueBuffer;
+        for (int pass = 0; pass < PASSES; pass++) {
+            int[] count = counts[pass];
+            int shift = pass * BITS;
+            // All the keys have the same digit, nothing moves in this pass
+            if (count[(int) (srcKeys[0] >>> shift) & MASK] == length) {
+                continue;
+            }
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int c = count[digit];
+                count[digit] = offset;
+                offset += c;
+            }
+            for (int i = 0; i < length; i++) {
+                long key = srcKeys[i];
+                int position = count[(int) (key >>> shift) & MASK]++;
+                dstKeys[position] = key;
+                dstValues[position] = srcValues[i];
+            }
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapValues = srcValues;
+            srcValues = dstValues;
+            dstValues = swapValues;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, length);
+            System.arraycopy(srcValues, 0, values, 0, length);
+        }
+    }
+
+    /**
+     * Parallel version of sort. The keys are cut into chunks; in every pass
+     * each chunk counts its own digits, the counts are turned into prefix sums
+     * in (digit, chunk) order and each chunk scatters its keys into the range
+     * reserved for it. The result is the same stable order as the sequential
+     * sort.
+     */
+    static void parallelSort(long[] keys, int[] values, int length, long[] keyBuffer, int[] valueBuffer) {
+        int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, length / (PARALLEL_THRESHOLD / 4));
+        if (length < PARALLEL_THRESHOLD || chunks < 2) {
+            sort(keys, values, length, keyBuffer, valueBuffer);
+            return;
+        }
+        int chunkSize = (length + chunks - 1) / chunks;
+        int[][] counts = new int[chunks][RADIX];
+
+        long[] srcKeys = keys;
+        int[] srcValues = values;
+        long[] dstKeys = keyBuffer;
+        int[] dstValues = valueBuffer;
+        for (int pass = 0; pass < PASSES; pass++) {
+            int shift = pass * BITS;
+            long[] fromKeys = srcKeys;
+            int[] fromValues = srcValues;
+            long[] toKeys = dstKeys;
+            int[] toValues = dstValues;
+
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                int[] count = counts[chunk];
+                Arrays.fill(count, 0);
+                int end = Math.min(length, (chunk + 1) * chunkSize);
+                for (int i = chunk * chunkSize; i < end; i++) {
+                    count[(int) (fromKeys[i] >>> shift) & MASK]++;
+                }
+            });
+
+            int offset = 0;
+            boolean trivial = false;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int start = offset;
+                for (int chunk = 0; chunk < chunks; chunk++) {
+                    int c = counts[chunk][digit];
+                    counts[chunk][digit] = offset;
+                    offset += c;
+                }
+                if (offset - start == length) {
+                    trivial = true;
+                    break;
+                }
+            }
+            // All the keys have the same digit, nothing moves in this pass
+            if (trivial) {
+                continue;
+            }
+
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                int[] count = counts[chunk];
+                int end = Math.min(length, (chunk + 1) * chunkSize);
+                for (int i = chunk * chunkSize; i < end; i++) {
+                    long key = fromKeys[i];
+                    int position = count[(int) (key >>> shift) & MASK]++;
+                    toKeys[position] = key;
+                    toValues[position] = fromValues[i];
+                }
+            });
+            srcKeys = toKeys;
+            dstKeys = fromKeys;
+            srcValues = toValues;
+            dstValues = fromValues;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, length);
+            System.arraycopy(srcValues, 0, values, 0, length);
+        }
+    }
+
+    /**
+     * Stable bottom-up merge sort for short inputs, starting from insertion
+     * sorted runs.
+     */
+    private static void mergeSort(long[] keys, int[] values, int length, long[] keyBuffer, int[] valueBuffer) {
+        for (int lo = 0; lo < length; lo += INSERTION_THRESHOLD) {
+            int hi = Math.min(lo + INSERTION_THRESHOLD, length);
+            for (int i = lo + 1; i < hi; i++) {
+                long key = keys[i];
+                int value = values[i];
+                int j = i - 1;
+                while (j >= lo && Long.compareUnsigned(keys[j], key) > 0) {
+                    keys[j + 1] = keys[j];
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                keys[j + 1] = key;
+                values[j + 1] = value;
+            }
+        }
+
+        long[] srcKeys = keys;
+        int[] srcValues = values;
+        long[] dstKeys = keyBuffer;
+        int[] dstValues = valueBuffer;
+        for (int width = INSERTION_THRESHOLD; width < length; width <<= 1) {
+            for (int lo = 0; lo < length; lo += width << 1) {
+                int mid = Math.min(lo + width, length);
+                int hi = Math.min(lo + (width << 1), length);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    if (Long.compareUnsigned(srcKeys[j], srcKeys[i]) < 0) {
+                        dstKeys[k] = srcKeys[j];
+                        dstValues[k++] = srcValues[j++];
+                    } else {
+                        dstKeys[k] = srcKeys[i];
+                        dstValues[k++] = srcValues[i++];
+                    }
+                }
+                while (i < mid) {
+                    dstKeys[k] = srcKeys[i];
+                    dstValues[k++] = srcValues[i++];
+                }
+                while (j < hi) {
+                    dstKeys[k] = srcKeys[j];
+                    dstValues[k++] = srcValues[j++];
+                }
+            }
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapValues = srcValues;
+            srcValues = dstValues;
+            dstValues = swapValues;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, length);
+            System.arraycopy(srcValues, 0, values, 0, length);
+        }
+    }
+
+    /**
+     * Sorts a list of points by their x coordinate.
+     *
+     * @param points the points to be sorted
+     */
+    public static void sortByX(List<Point> points) {
+        int numPoints = points.size();
+        long[] keys = new long[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = sortableBits(points.get(i).getX());
+        }
+        reorder(points, keys);
+    }
+
+    /**
+     * Sorts a list of points by their y coordinate.
+     *
+     * @param points the points to be sorted
+     */
+    public static void sortByY(List<Point> points) {
+        int numPoints = points.size();
+        long[] keys = new long[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            keys[i] = sortableBits(points.get(i).getY());
+        }
+        reorder(points, keys);
+    }
+
+    /**
+     * Sorts a list of points by their x coordinate using all the cores of the
+     * common fork/join pool.
+     *
+     * @param points the points to be sorted
+     */
+    public static void parallelSortByX(List<Point> points) {
+        Point[] array = points.toArray(new Point[0]);
+        long[] keys = new long[array.length];
+        IntStream.range(0, array.length).parallel().forEach(i -> keys[i] = sortableBits(array[i].getX()));
+        parallelReorder(points, array, keys);
+    }
+
+    /**
+     * Sorts a list of points by their y coordinate using all the cores of the
+     * common fork/join pool.
+     *
+     * @param points the points to be sorted
+     */
+    public static void parallelSortByY(List<Point> points) {
+        Point[] array = points.toArray(new Point[0]);
+        long[] keys = new long[array.length];
+        IntStream.range(0, array.length).parallel().forEach(i -> keys[i] = sortableBits(array[i].getY()));
+        parallelReorder(points, array, keys);
+    }
+
+    private static void parallelReorder(List<Point> points, Point[] array, long[] keys) {
+        int numPoints = keys.length;
+        if (numPoints < 2) {
+            return;
+        }
+        int[] indices = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            indices[i] = i;
+        }
+        parallelSort(keys, indices, numPoints, new long[numPoints], new int[numPoints]);
+        for (int i = 0; i < numPoints; i++) {
+            points.set(i, array[indices[i]]);
+        }
+    }
+
+    private static void reorder(List<Point> points, long[] keys) {
+        int numPoints = keys.length;
+        if (numPoints < 2) {
+            return;
+        }
+        int[] indices = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            indices[i] = i;
+        }
+        sort(keys, indices, numPoints, new long[numPoints], new int[numPoints]);
+        Point[] sorted = new Point[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            sorted[i] = points.get(indices[i]);
+        }
+        for (int i = 0; i < numPoints; i++) {
+            points.set(i, sorted[i]);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package Analusi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * A worker process of ShardedClosestPair. It solves the slabs the
+ * coordinator sends it with ArrayClosestPair.
+ *
+ * The worker listens on the loopback interface and prints
+ * "ShardWorker listening on port N" as its first line of output. Every
+ * connection is served by its own thread and carries any number of requests,
+ * answered in order:
+ *
+ * - request: int count, then count points as x and y doubles, or count = -1
+ *   to shut the worker down
+ * - response: int first, int second (indices in the request, -1 for less than
+ *   two points) and the double distance of the two points
+ *
+ * Usage: java Analusi.ShardWorker [port], where port 0 (the default) picks a
+ * free port.
+ */
+public class ShardWorker {
+
+    static final int SHUTDOWN = -1;
+
+    private final ServerSocket server;
+
+    public ShardWorker(int port) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Serves connections until a shutdown request arrives.
+     */
+    public void serve() throws IOException {
+        while (true) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (server.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            Thread thread = new Thread(() -> handle(socket), "shard-connection-" + socket.getPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void handle(Socket socket) {
+        ArrayClosestPair engine = new ArrayClosestPair();
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            while (true) {
+                int count;
+                try {
+                    count = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (count == SHUTDOWN) {
+                    server.close();
+                    return;
+                }
+                double[] xs = new double[count];
+                double[] ys = new double[count];
+                for (int i = 0; i < count; i++) {
+                    xs[i] = in.readDouble();
+                    ys[i] = in.readDouble();
+                }
+                PointStore store = new PointStore(xs, ys);
+                if (count < 2) {
+                    out.writeInt(-1);
+                    out.writeInt(-1);
+                    out.writeDouble(Double.POSITIVE_INFINITY);
+                } else {
+                    engine.closestPair(store);
+                    out.writeInt(engine.bestFirst);
+                    out.writeInt(engine.bestSecond);
+                    out.writeDouble(ClosestPair.distance(store.getPoint(engine.bestFirst),
+                            store.getPoint(engine.bestSecond)));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("ShardWorker: connection failed: " + e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ShardWorker worker = new ShardWorker(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+        System.out.println("ShardWorker listening on port " + worker.getPort());
+        System.out.flush();
+        worker.serve();
+    }
+}
@@ -0,0 +1,425 @@
+package Analusi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Closest pair split between worker processes (see ShardWorker).
+ *
+ * The points sorted by x are cut into one vertical slab per worker, with the
+ * same number of points each; this is the split findClosestPairbyX of CP_1969
+ * does at the top level, with more than two parts. Every slab is sent to its
+ * worker over a socket and the workers solve their slabs at the same time.
+ * With dmin the least distance the workers found, a closer pair that crosses
+ * the boundary between two slabs has both points less than dmin away from it
+ * (in the x-axis), so the coordinator only solves the strips of width 2 * dmin
+ * around the boundaries, with ArrayClosestPair.
+ *
+ * The coordinator keeps the coordinates in primitive arrays; the recursion and
+ * its scratch memory are in the workers. An instance keeps its connections
+ * until it is closed and should be used by one thread at a time.
+ */
+public class ShardedClosestPair extends ClosestPair implements AutoCloseable {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    // How long launchLocal waits for a worker to print its port
+    static final long STARTUP_TIMEOUT_MILLIS = 30_000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    private final List<WorkerConnection> connections = new ArrayList<>();
+    private final List<Process> processes = new ArrayList<>();
+    private final ExecutorService executor;
+
+    /**
+     * Connects to running workers.
+     *
+     * @param workers the addresses of the workers
+     */
+    public ShardedClosestPair(List<InetSocketAddress> workers) throws IOException {
+        this(workers, List.of());
+    }
+
+    private ShardedClosestPair(List<InetSocketAddress> workers, List<Process> processes) throws IOException {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("At least one worker is needed");
+        }
+        this.processes.addAll(processes);
+        executor = Executors.newFixedThreadPool(workers.size(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (InetSocketAddress address : workers) {
+                connections.add(new WorkerConnection(address));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts worker processes on this machine, with the class path of this
+     * JVM, and connects to them. Closing the returned instance shuts the
+     * workers down. A worker that does not print its port within
+     * STARTUP_TIMEOUT_MILLIS fails the launch, and all the workers started so
+     * far are killed.
+     *
+     * @param numWorkers the number of worker processes
+     * @param jvmOptions options for the worker JVMs, e.g. -Xmx4g
+     * @return a coordinator connected to the new workers
+     */
+    public static ShardedClosestPair launchLocal(int numWorkers, String... jvmOptions) throws IOException {
+        return launchLocal(numWorkers, STARTUP_TIMEOUT_MILLIS, jvmOptions);
+    }
+
+    static ShardedClosestPair launchLocal(int numWorkers, long startupTimeoutMillis, String... jvmOptions)
+            throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(Arrays.asList(jvmOptions));
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardWorker.class.getName());
+                Process process = new ProcessBuilder(command)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(process);
+                String line = firstLine(process, startupTimeoutMillis);
+                if (line == null || !line.startsWith("ShardWorker listening on port ")) {
+                    throw new IOException("Worker " + i + " did not start: " + line);
+                }
+                int port = Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1));
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+            throw e;
+        }
+        return new ShardedClosestPair(addresses, processes);
+    }
+
+    /**
+     * Reads the first line a process prints, on another thread so the wait
+     * can time out. Killing the process ends that thread.
+     *
+     * @return the line, or null if the process exited without printing one
+     */
+    private static String firstLine(Process process, long timeoutMillis) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        FutureTask<String> line = new FutureTask<>(reader::readLine);
+        Thread thread = new Thread(line, "shard-worker-startup");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            return line.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("The worker did not start within " + timeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a worker to start", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Reading the output of a worker failed", e.getCause());
+        }
+    }
+
+    public int getNumWorkers() {
+        return connections.size();
+    }
+
+    /**
+     * Finds the closest pair of the points in the given store.
+     *
+     * @param store the points to be examined
+     * @return a Pair of the closest points, or null for less than two points
+     */
+    public Pair closestPair(PointStore store) throws IOException {
+        int numPoints = store.size();
+        int[] indices = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            indices[i] = i;
+        }
+        RadixSort.sortIndices(store.xs, indices, 0, numPoints);
+        double[] xs = new double[numPoints];
+        double[] ys = new double[numPoints];
+        for (int position = 0; position < numPoints; position++) {
+            xs[position] = store.xs[indices[position]];
+            ys[position] = store.ys[indices[position]];
+        }
+        IndexPair closest = solve(xs, ys);
+        if (closest == null) {
+            return null;
+        }
+        return new Pair(store.getPoint(indices[closest.getFirst()]), store.getPoint(indices[closest.getSecond()]));
+    }
+
+    /**
+     * The slabs only need the points sorted by x, so unlike the default
+     * implementation this one does not sort by y.
+     */
+    @Override
+    public Pair initializeDivideAndConquer(List<Point> points) {
+        List<Point> pointsSortedByX = new ArrayList<>(points);
+        sortByX(pointsSortedByX);
+        return divideAndConquer(pointsSortedByX, pointsSortedByX);
+    }
+
+    /**
+     * Only the first list is used.
+     */
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        PointStore store = PointStore.fromPoints(pointsSortedByX);
+        IndexPair closest;
+        try {
+            closest = solve(store.xs, store.ys);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (closest == null) {
+            return null;
+        }
+        return new Pair(pointsSortedByX.get(closest.getFirst()), pointsSortedByX.get(closest.getSecond()));
+    }
+
+    /**
+     * Solves points sorted by x.
+     *
+     * @return the positions of the closest pair, or null for less than two
+     * points
+     */
+    private IndexPair solve(double[] xs, double[] ys) throws IOException {
+        int numPoints = xs.length;
+        if (numPoints < 2) {
+            return null;
+        }
+        int numSlabs = Math.max(1, Math.min(connections.size(), numPoints / 2));
+        int[] starts = new int[numSlabs + 1];
+        for (int slab = 0; slab <= numSlabs; slab++) {
+            starts[slab] = (int) ((long) slab * numPoints / numSlabs);
+        }
+
+        List<Future<IndexPair>> results = new ArrayList<>();
+        for (int slab = 0; slab < numSlabs; slab++) {
+            WorkerConnection connection = connections.get(slab);
+            int from = starts[slab];
+            int to = starts[slab + 1];
+            results.add(executor.submit(() -> connection.solve(xs, ys, from, to)));
+        }
+        IndexPair closest = null;
+        for (Future<IndexPair> result : results) {
+            IndexPair slabMin = await(result);
+            if (closest == null || slabMin.getDistance() < closest.getDistance()) {
+                closest = slabMin;
+            }
+        }
+
+        // The strips around the boundaries; strips that overlap are solved
+        // together
+        double dmin = closest.getDistance();
+        ArrayClosestPair engine = new ArrayClosestPair();
+        int slab = 1;
+        while (slab < numSlabs) {
+            int from = lowerBound(xs, xs[starts[slab]] - dmin);
+            int to = upperBound(xs, xs[starts[slab]] + dmin);
+            slab++;
+            while (slab < numSlabs && lowerBound(xs, xs[starts[slab]] - dmin) <= to) {
+                to = upperBound(xs, xs[starts[slab]] + dmin);
+                slab++;
+            }
+            if (to - from < 2) {
+                continue;
+            }
+            int[] strip = new int[to - from];
+            for (int i = 0; i < strip.length; i++) {
+                strip[i] = from + i;
+            }
+            engine.solve(xs, ys, strip, strip.length);
+            double distance = hypot(xs[engine.bestSecond] - xs[engine.bestFirst], ys[engine.bestSecond] - ys[engine.bestFirst]);
+            if (distance < dmin) {
+                closest = new IndexPair(engine.bestFirst, engine.bestSecond, distance);
+                dmin = distance;
+            }
+        }
+        return closest;
+    }
+
+    private static IndexPair await(Future<IndexPair> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a worker", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("A worker failed", e.getCause());
+        }
+    }
+
+    /**
+     * @return the first position whose x is at least x
+     */
+    private static int lowerBound(double[] xs, double x) {
+        int lo = 0;
+        int hi = xs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return the first position whose x is larger than x
+     */
+    private static int upperBound(double[] xs, double x) {
+        int lo = 0;
+        int hi = xs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Closes the connections and, for workers started by launchLocal, shuts
+     * the worker processes down.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (WorkerConnection connection : connections) {
+            try {
+                connection.close(!processes.isEmpty());
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        connections.clear();
+        executor.shutdownNow();
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        processes.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * A connection to one worker, used for one request at a time.
+     */
+    private static class WorkerConnection {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        WorkerConnection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        /**
+         * Sends the points [from, to) to the worker and returns their closest
+         * pair, as positions in xs and ys.
+         */
+        synchronized IndexPair solve(double[] xs, double[] ys, int from, int to) throws IOException {
+            out.writeInt(to - from);
+            for (int i = from; i < to; i++) {
+                out.writeDouble(xs[i]);
+                out.writeDouble(ys[i]);
+            }
+            out.flush();
+            int first = in.readInt();
+            int second = in.readInt();
+            double distance = in.readDouble();
+            if (first < 0) {
+                throw new IOException("The worker found no pair in a slab of " + (to - from) + " points");
+            }
+            return new IndexPair(from + first, from + second, distance);
+        }
+
+        synchronized void close(boolean shutdownWorker) throws IOException {
+            try {
+                if (shutdownWorker) {
+                    out.writeInt(ShardWorker.SHUTDOWN);
+                    out.flush();
+                }
+            } finally {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Starts 4 local workers and checks the sharded result against
+     * ArrayClosestPair.
+     */
+    public static void main(String[] args) throws IOException {
+        int numPoints = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        PointStore store = new PointGenerator(1969).generate(PointGenerator.Distribution.UNIFORM, numPoints);
+        try (ShardedClosestPair sharded = launchLocal(4)) {
+            long start = System.nanoTime();
+            Pair pair = sharded.closestPair(store);
+            long elapsed = System.nanoTime() - start;
+            Pair expected = new ArrayClosestPair().closestPair(store);
+            System.out.println(pair + " in " + elapsed / 1_000_000 + " ms");
+            System.out.println(pair.equals(expected) ? "Correct" : "Wrong");
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package Analusi;
+
+import java.util.Arrays;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * An index over a fixed set of points in the plane, built once and queried
+ * many times.
+ *
+ * - nearest(x, y) searches a KdTree over the points.
+ * - closestPairInBox and closestPair(int[]) use a copy of the points that is
+ *   sorted by x when the index is built: the points of the query are picked
+ *   from it already in x order and solved with ArrayClosestPair, so a query
+ *   never sorts coordinates again.
+ *
+ * The index is immutable after construction and the queries keep their state
+ * in local variables, so any number of threads can query the same index at
+ * once without locking.
+ */
+public class SpatialIndex {
+
+    private final int size;
+    private final KdTree tree;
+    // The points sorted by x, with their indices in the original store
+    private final double[] sortedXs;
+    private final double[] sortedYs;
+    private final int[] sortedIndices;
+    // The position of every point in the x order
+    private final int[] ranks;
+
+    /**
+     * Builds the index. The coordinates are copied, so the store may change
+     * afterwards.
+     *
+     * @param store the points to be indexed
+     */
+    public SpatialIndex(PointStore store) {
+        size = store.size();
+        tree = new KdTree(PointCloud.fromStore(store));
+
+        sortedIndices = new int[size];
+        for (int i = 0; i < size; i++) {
+            sortedIndices[i] = i;
+        }
+        RadixSort.sortIndices(store.xs, sortedIndices, 0, size);
+        sortedXs = new double[size];
+        sortedYs = new double[size];
+        ranks = new int[size];
+        for (int position = 0; position < size; position++) {
+            int index = sortedIndices[position];
+            sortedXs[position] = store.xs[index];
+            sortedYs[position] = store.ys[index];
+            ranks[index] = position;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return sortedXs[ranks[index]];
+    }
+
+    public double getY(int index) {
+        return sortedYs[ranks[index]];
+    }
+
+    public Point getPoint(int index) {
+        return new Point(getX(index), getY(index));
+    }
+
+    /**
+     * Distances are compared like ClosestPair.distance computes them, also
+     * where their squares overflow or underflow (see KdTree.nearest).
+     *
+     * @param x the x coordinate of the query point
+     * @param y the y coordinate of the query point
+     * @return the index of the indexed point nearest to (x, y), or -1 if the
+     * index is empty
+     */
+    public int nearest(double x, double y) {
+        if (size == 0) {
+            return -1;
+        }
+        int position = tree.nearest(x, y, -1, Double.POSITIVE_INFINITY);
+        // No point is found only if all of them are infinitely far away
+        return tree.indices[Math.max(position, 0)];
+    }
+
+    /**
+     * Finds the closest pair of the indexed points that lie in a box, borders
+     * included. It costs O(m log m) for the m points whose x is in the range
+     * of the box.
+     *
+     * @return the indices of the closest points and their distance, or null
+     * if the box holds less than two points
+     */
+    public IndexPair closestPairInBox(double minX, double minY, double maxX, double maxY) {
+        int from = lowerBound(minX);
+        int to = upperBound(maxX);
+        int[] positions = new int[Math.max(to - from, 0)];
+        int count = 0;
+        for (int position = from; position < to; position++) {
+            double y = sortedYs[position];
+            if (y >= minY && y <= maxY) {
+                positions[count++] = position;
+            }
+        }
+        return solve(positions, count);
+    }
+
+    /**
+     * Finds the closest pair of a subset of the indexed points.
+     *
+     * @param subset the indices of the points of the subset, without repeats
+     * @return the indices of the closest points and their distance, or null
+     * for less than two points
+     */
+    public IndexPair closestPair(int[] subset) {
+        int[] positions = new int[subset.length];
+        for (int i = 0; i < subset.length; i++) {
+            positions[i] = ranks[subset[i]];
+        }
+        Arrays.sort(positions);
+        return solve(positions, positions.length);
+    }
+
+    /**
+     * Solves the points at the first count of the given positions of the x
+     * order, which must be increasing.
+     */
+    private IndexPair solve(int[] positions, int count) {
+        if (count < 2) {
+            return null;
+        }
+        ArrayClosestPair engine = new ArrayClosestPair();
+        engine.solve(sortedXs, sortedYs, positions, count);
+        int first = engine.bestFirst;
+        int second = engine.bestSecond;
+        double distance = ClosestPair.hypot(sortedXs[second] - sortedXs[first], sortedYs[second] - sortedYs[first]);
+        return new IndexPair(sortedIndices[first], sortedIndices[second], distance);
+    }
+
+    /**
+     * @return the first position whose x is at least x
+     */
+    private int lowerBound(double x) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedXs[mid] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return the first position whose x is larger than x
+     */
+    private int upperBound(double x) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedXs[mid] <= x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
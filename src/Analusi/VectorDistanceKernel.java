@@ -0,0 +1,60 @@
+package Analusi;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * DistanceKernel on the jdk.incubator.vector API. Only DistanceKernel.get()
+ * refers to this class, by name, so nothing breaks when the module is missing.
+ *
+ * Every step loads a vector of x and of y coordinates, computes their squared
+ * distances to the query point and keeps the lane-wise minimum, so the loop has
+ * no branches. Only when the minimum beats the bound, which is rare when the
+ * bound is the best distance so far, the range is scanned again for the first
+ * point at that distance. Coordinates must not be NaN.
+ */
+class VectorDistanceKernel extends DistanceKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public int nearest(double[] xs, double[] ys, int from, int to, double x, double y, double boundSquared) {
+        int upper = from + SPECIES.loopBound(to - from);
+        double best = boundSquared;
+        if (from < upper) {
+            DoubleVector qx = DoubleVector.broadcast(SPECIES, x);
+            DoubleVector qy = DoubleVector.broadcast(SPECIES, y);
+            DoubleVector min = DoubleVector.broadcast(SPECIES, boundSquared);
+            for (int i = from; i < upper; i += SPECIES.length()) {
+                DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, i).sub(qx);
+                DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, i).sub(qy);
+                // No fma, to round exactly like the scalar dx * dx + dy * dy
+                min = min.min(dx.mul(dx).add(dy.mul(dy)));
+            }
+            best = min.reduceLanes(VectorOperators.MIN);
+        }
+        int nearest = -1;
+        if (best < boundSquared) {
+            // Some lane beat the bound: find the first point at the minimum
+            for (int i = from; i < upper; i++) {
+                double dx = xs[i] - x;
+                double dy = ys[i] - y;
+                if (dx * dx + dy * dy == best) {
+                    nearest = i;
+                    break;
+                }
+            }
+        }
+        for (int i = upper; i < to; i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            double distance = dx * dx + dy * dy;
+            if (distance < best) {
+                best = distance;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,295 @@
+package Analusi;
+
+import java.util.List;
+
+/**
+ * Closest pair of a set of moving points, solved once per frame.
+ *
+ * The point at index i of every frame is taken to be the same object as the
+ * point at index i of the previous frame. Between frames the points move a
+ * little, so the solver keeps what the last frame found instead of starting
+ * over:
+ *
+ * - the x order of the last frame, which is repaired with an insertion sort;
+ *   when the points moved so much that the insertion sort would do more than
+ *   SORT_SHIFTS_PER_POINT shifts per point it gives up and radix sorts
+ * - the last closest pair, whose distance in the new frame is an upper bound
+ *   of the new closest distance
+ *
+ * With that bound the frame is solved by a plane sweep in x order that only
+ * compares points less than the best distance apart in x, which is close to
+ * linear when the points are spread out. When the sweep compares more than
+ * SWEEP_COMPARISONS_PER_POINT pairs per point, as on points that share an x,
+ * it sweeps in y order instead (kept and repaired the same way, but only
+ * when it is needed), and when that fails too the frame is solved by
+ * BottomUpClosestPair. Every sweep starts from the best pair found so far, so
+ * no work is lost. A sweep whose best squared distance is not exact (see
+ * ClosestPair.isExactSquare) is not trusted either: the frame goes to
+ * BottomUpClosestPair, which then solves it with hypot distances.
+ *
+ * Frames with another number of points than the last one start over. The
+ * result is one Pair that every frame updates. An instance should not be used
+ * by more than one thread at a time.
+ */
+public class WarmStartClosestPair extends ClosestPair {
+
+    static final int SORT_SHIFTS_PER_POINT = 8;
+    static final int SWEEP_COMPARISONS_PER_POINT = 16;
+
+    private final Pair closestpair = new Pair();
+    private final BottomUpClosestPair fallback = new BottomUpClosestPair();
+
+    private int size = -1;
+    // The coordinates of the frame, for frames given as a List
+    private double[] frameXs = new double[0];
+    private double[] frameYs = new double[0];
+    // The indices of the points in x order and their coordinates in that
+    // order, and the same for the y order
+    private final Order byX = new Order();
+    private final Order byY = new Order();
+    // The radix sort buffers
+    private long[] keys = new long[0];
+    private long[] keyBuffer = new long[0];
+    private int[] valueBuffer = new int[0];
+
+    // The closest pair of the last frame, as indices, -1 if there is none
+    private int lastFirst = -1;
+    private int lastSecond = -1;
+
+    private double bestDistanceSquared;
+    private int bestFirst;
+    private int bestSecond;
+
+    /**
+     * The points of a frame in the order of one axis. sorted holds the
+     * coordinates along that axis and other those along the other one.
+     */
+    private static final class Order {
+        int[] indices = new int[0];
+        double[] sorted = new double[0];
+        double[] other = new double[0];
+        // Whether indices is in the order of some earlier frame
+        boolean valid;
+    }
+
+    /**
+     * Finds the closest pair of the next frame.
+     *
+     * @param frame the points of the frame
+     * @return the result Pair of this instance, which the next frame
+     * overwrites, or null for less than two points
+     */
+    public Pair closestPair(PointStore frame) {
+        int numPoints = frame.size();
+        if (numPoints < 2) {
+            reset();
+            return null;
+        }
+        solve(frame.xs, frame.ys, numPoints);
+        closestpair.update(frame.getPoint(bestFirst), frame.getPoint(bestSecond), distance(frame.xs, frame.ys));
+        return closestpair;
+    }
+
+    /**
+     * Finds the closest pair of the next frame, given as a list whose order
+     * stays the same from frame to frame.
+     *
+     * @return the result Pair of this instance, which the next frame
+     * overwrites, or null for less than two points
+     */
+    @Override
+    public Pair initializeDivideAndConquer(List<Point> points) {
+        int numPoints = points.size();
+        if (numPoints < 2) {
+            reset();
+            return null;
+        }
+        if (frameXs.length < numPoints) {
+            frameXs = new double[numPoints];
+            frameYs = new double[numPoints];
+        }
+        for (int i = 0; i < numPoints; i++) {
+            Point point = points.get(i);
+            frameXs[i] = point.getX();
+            frameYs[i] = point.getY();
+        }
+        solve(frameXs, frameYs, numPoints);
+        closestpair.update(points.get(bestFirst), points.get(bestSecond), distance(frameXs, frameYs));
+        return closestpair;
+    }
+
+    /**
+     * Only the first list is used, as the next frame, so like the list given
+     * to initializeDivideAndConquer its order must stay the same from frame
+     * to frame.
+     */
+    @Override
+    public Pair divideAndConquer(List<Point> pointsSortedByX, List<Point> pointsSortedByY) {
+        return initializeDivideAndConquer(pointsSortedByX);
+    }
+
+    /**
+     * Forgets the last frame, so the next one starts over.
+     */
+    public void reset() {
+        size = -1;
+        lastFirst = -1;
+        lastSecond = -1;
+        byX.valid = false;
+        byY.valid = false;
+    }
+
+    private double distance(double[] xs, double[] ys) {
+        return hypot(xs[bestSecond] - xs[bestFirst], ys[bestSecond] - ys[bestFirst]);
+    }
+
+    private void solve(double[] xs, double[] ys, int numPoints) {
+        if (numPoints != size) {
+            reset();
+            size = numPoints;
+            ensureCapacity(byX, numPoints);
+            ensureCapacity(byY, numPoints);
+            if (keys.length < numPoints) {
+                keys = new long[numPoints];
+                keyBuffer = new long[numPoints];
+                valueBuffer = new int[numPoints];
+            }
+        }
+
+        bestDistanceSquared = Double.POSITIVE_INFINITY;
+        bestFirst = 0;
+        bestSecond = 1;
+        if (lastFirst >= 0) {
+            double dx = xs[lastSecond] - xs[lastFirst];
+            double dy = ys[lastSecond] - ys[lastFirst];
+            bestDistanceSquared = dx * dx + dy * dy;
+            bestFirst = lastFirst;
+            bestSecond = lastSecond;
+        }
+
+        sort(byX, xs, ys, numPoints);
+        // Without a bound the sweep would compare every pair
+        if (lastFirst < 0 || !sweep(byX, numPoints)) {
+            if (lastFirst >= 0) {
+                sort(byY, ys, xs, numPoints);
+            }
+            if (lastFirst < 0 || !sweep(byY, numPoints)) {
+                solveWithFallback(xs, ys, numPoints);
+            }
+        } else if (!isExactSquare(bestDistanceSquared,
+                xs[bestFirst] == xs[bestSecond] && ys[bestFirst] == ys[bestSecond])) {
+            // The sweep compared squares that overflowed or underflowed;
+            // the fallback checks for that and solves with hypot if needed
+            solveWithFallback(xs, ys, numPoints);
+        }
+        lastFirst = bestFirst;
+        lastSecond = bestSecond;
+    }
+
+    private void solveWithFallback(double[] xs, double[] ys, int numPoints) {
+        fallback.solve(xs, ys, numPoints);
+        bestFirst = fallback.firstIndex();
+        bestSecond = fallback.secondIndex();
+    }
+
+    private static void ensureCapacity(Order order, int numPoints) {
+        if (order.indices.length < numPoints) {
+            order.indices = new int[numPoints];
+            order.sorted = new double[numPoints];
+            order.other = new double[numPoints];
+        }
+    }
+
+    /**
+     * Brings an order up to date with the frame whose coordinates along its
+     * axis are primary and along the other axis secondary.
+     */
+    private void sort(Order order, double[] primary, double[] secondary, int numPoints) {
+        int[] indices = order.indices;
+        double[] sorted = order.sorted;
+        if (!order.valid || !insertionSort(indices, sorted, primary, numPoints)) {
+            if (!order.valid) {
+                for (int i = 0; i < numPoints; i++) {
+                    indices[i] = i;
+                }
+            }
+            // The indices hold a permutation either way, which is all the
+            // radix sort needs
+            for (int i = 0; i < numPoints; i++) {
+                keys[i] = RadixSort.sortableBits(primary[indices[i]]);
+            }
+            RadixSort.sort(keys, indices, numPoints, keyBuffer, valueBuffer);
+            for (int i = 0; i < numPoints; i++) {
+                sorted[i] = primary[indices[i]];
+            }
+            order.valid = true;
+        }
+        double[] other = order.other;
+        for (int i = 0; i < numPoints; i++) {
+            other[i] = secondary[indices[i]];
+        }
+    }
+
+    /**
+     * Sorts the indices of the last frame by their new coordinates, which are
+     * copied into sorted along the way.
+     *
+     * @return false, leaving the indices a permutation in no particular order,
+     * if the sort took too many shifts
+     */
+    static boolean insertionSort(int[] indices, double[] sorted, double[] coordinates, int numPoints) {
+        long budget = (long) SORT_SHIFTS_PER_POINT * numPoints;
+        for (int i = 0; i < numPoints; i++) {
+            int index = indices[i];
+            double value = coordinates[index];
+            int k = i - 1;
+            while (k >= 0 && sorted[k] > value) {
+                sorted[k + 1] = sorted[k];
+                indices[k + 1] = indices[k];
+                k--;
+            }
+            sorted[k + 1] = value;
+            indices[k + 1] = index;
+            budget -= i - 1 - k;
+            if (budget < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sweeps the points in the given order, comparing every point with the
+     * next ones while they are closer than the best distance along the axis.
+     *
+     * @return false if the sweep gave up after too many comparisons; the best
+     * pair is still the best of the pairs compared
+     */
+    private boolean sweep(Order order, int numPoints) {
+        int[] indices = order.indices;
+        double[] sorted = order.sorted;
+        double[] other = order.other;
+        long budget = (long) SWEEP_COMPARISONS_PER_POINT * numPoints;
+        for (int i = 0; i < numPoints - 1; i++) {
+            double a = sorted[i];
+            double b = other[i];
+            for (int j = i + 1; j < numPoints; j++) {
+                double da = sorted[j] - a;
+                if (da * da >= bestDistanceSquared) {
+                    break;
+                }
+                double db = other[j] - b;
+                double distance = da * da + db * db;
+                if (distance < bestDistanceSquared) {
+                    bestDistanceSquared = distance;
+                    bestFirst = indices[i];
+                    bestSecond = indices[j];
+                }
+                if (--budget < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
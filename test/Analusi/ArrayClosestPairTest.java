@@ -0,0 +1,129 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks PointStore and ArrayClosestPair against ClosestPair.bruteForce, for
+ * several leaf sizes and with both distance kernels.
+ */
+class ArrayClosestPairTest {
+
+    @Test
+    void storeGrowsAndKeepsOrder() {
+        PointStore store = new PointStore(1);
+        for (int i = 0; i < 1000; i++) {
+            store.add(i, -i);
+        }
+        store.add(new Point(0.5, 0.25));
+        assertEquals(1001, store.size());
+        assertEquals(new Point(999, -999), store.getPoint(999));
+        assertEquals(0.5, store.getX(1000));
+        assertEquals(0.25, store.getY(1000));
+    }
+
+    @Test
+    void storeFromPointsKeepsIndices() {
+        List<Point> points = List.of(new Point(3, 4), new Point(1, 2), new Point(5, 6));
+        PointStore store = PointStore.fromPoints(points);
+        assertEquals(3, store.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i), store.getPoint(i));
+        }
+    }
+
+    @Test
+    void storeRejectsArraysOfDifferentLengths() {
+        assertThrows(IllegalArgumentException.class, () -> new PointStore(new double[3], new double[2]));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 8, 32, 1000})
+    void matchesBruteForce(int leafSize) {
+        Random random = new Random(leafSize);
+        for (int trial = 0; trial < 50; trial++) {
+            List<Point> points = new ArrayList<>();
+            int numPoints = 2 + random.nextInt(400);
+            for (int i = 0; i < numPoints; i++) {
+                // Small integer coordinates make duplicates and ties common
+                int range = trial % 2 == 0 ? 40 : 1_000_000;
+                points.add(new Point(random.nextInt(range), random.nextInt(range)));
+            }
+            assertSameDistance(points, leafSize);
+        }
+    }
+
+    @Test
+    void scalarKernelMatchesDefault() {
+        PointStore store = new PointGenerator(1).generate(PointGenerator.Distribution.CLUSTERED, 20_000);
+        Pair expected = new ArrayClosestPair().closestPair(store);
+        Pair actual = new ArrayClosestPair(DistanceKernel.scalar()).closestPair(store);
+        assertEquals(expected.getDistance(), actual.getDistance());
+    }
+
+    @Test
+    void lessThanTwoPoints() {
+        ArrayClosestPair engine = new ArrayClosestPair();
+        PointStore store = new PointStore();
+        assertNull(engine.closestPair(store));
+        store.add(1, 2);
+        assertNull(engine.closestPair(store));
+        assertNull(engine.divideAndConquer(List.of(), List.of()));
+    }
+
+    @Test
+    void leafSizeIsAtLeastTwo() {
+        ArrayClosestPair engine = new ArrayClosestPair();
+        engine.setLeafSize(0);
+        assertEquals(2, engine.getLeafSize());
+    }
+
+    /**
+     * The squares of the distances overflow or underflow, so the engine has to
+     * fall back to hypot distances.
+     */
+    @Test
+    void overflowingAndUnderflowingSquares() {
+        assertSameDistance(List.of(new Point(0, 0), new Point(1e200, 0), new Point(0, 3e190), new Point(-1e250, 1e250)), 2);
+        assertSameDistance(List.of(new Point(0, 0), new Point(3e-170, 0), new Point(1e-170, 0), new Point(5, 5)), 2);
+    }
+
+    /**
+     * One engine solves stores of different sizes in turns, so its scratch
+     * arrays are reused.
+     */
+    @Test
+    void reusesEngineAcrossSizes() {
+        ArrayClosestPair engine = new ArrayClosestPair();
+        PointGenerator generator = new PointGenerator(9);
+        for (int numPoints : new int[] {5000, 10, 20_000, 2, 300}) {
+            PointStore store = generator.generate(PointGenerator.Distribution.UNIFORM, numPoints);
+            List<Point> points = new ArrayList<>();
+            for (int i = 0; i < numPoints; i++) {
+                points.add(store.getPoint(i));
+            }
+            assertEquals(ClosestPair.bruteForce(points).getDistance(), engine.closestPair(store).getDistance());
+        }
+    }
+
+    private static void assertSameDistance(List<Point> points, int leafSize) {
+        double expected = ClosestPair.bruteForce(new ArrayList<>(points)).getDistance();
+        ArrayClosestPair engine = new ArrayClosestPair();
+        engine.setLeafSize(leafSize);
+        Pair pair = engine.closestPair(PointStore.fromPoints(points));
+        assertEquals(expected, pair.getDistance());
+        assertEquals(expected, ClosestPair.distance(pair.getPoint1(), pair.getPoint2()));
+    }
+}
@@ -0,0 +1,115 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks BatchClosestPair set by set against ClosestPair.bruteForce, with
+ * cutoffs that send every set to the brute force, none of them, or some.
+ */
+class BatchClosestPairTest {
+
+    @ParameterizedTest
+    @CsvSource({"0, 2", "8, 8", "1000, 16", "40, 3"})
+    void matchesBruteForcePerSet(int bruteForceCutoff, int leafSize) {
+        Random random = new Random(bruteForceCutoff);
+        BatchClosestPair batch = new BatchClosestPair(bruteForceCutoff, leafSize);
+        int numSets = 500;
+        int[] offsets = new int[numSets + 1];
+        for (int set = 0; set < numSets; set++) {
+            // Empty and single point sets too
+            offsets[set + 1] = offsets[set] + random.nextInt(set % 10 == 0 ? 3 : 150);
+        }
+        double[] xs = new double[offsets[numSets]];
+        double[] ys = new double[offsets[numSets]];
+        for (int i = 0; i < xs.length; i++) {
+            int range = i % 2 == 0 ? 20 : 1_000_000;
+            xs[i] = random.nextInt(range);
+            ys[i] = random.nextInt(range);
+        }
+        assertMatchesBruteForce(batch, xs, ys, offsets);
+    }
+
+    @Test
+    void defaultCutoffsComeFromPlanner() {
+        BatchClosestPair batch = new BatchClosestPair();
+        ClosestPairPlanner.Calibration calibration = ClosestPairPlanner.Calibration.host();
+        assertEquals(calibration.getBruteForceCutoff(), batch.getBruteForceCutoff());
+        assertEquals(calibration.getLeafSize(), batch.getLeafSize());
+        PointStore store = new PointGenerator(23).generate(PointGenerator.Distribution.CLUSTERED, 5000);
+        assertMatchesBruteForce(batch, store.xs, store.ys, new int[] {0, 7, 100, 100, 2000, 5000});
+    }
+
+    /**
+     * Sets whose squared distances overflow or underflow, below the brute
+     * force cutoff, so they are solved again with hypot distances.
+     */
+    @Test
+    void inexactSquares() {
+        double[] xs = {0, 1e200, 0, -1e250, 0, 3e-170, 1e-170, 5, Double.MAX_VALUE, -Double.MAX_VALUE};
+        double[] ys = {0, 0, 3e190, 1e250, 0, 0, 0, 5, Double.MAX_VALUE, -Double.MAX_VALUE};
+        int[] pairs = new int[6];
+        double[] distances = new double[3];
+        new BatchClosestPair(100, 8).solve(xs, ys, new int[] {0, 4, 8, 10}, pairs, distances);
+        assertEquals(3e190, distances[0]);
+        assertEquals(1e-170, distances[1]);
+        // Infinitely far apart, but still a pair
+        assertEquals(Double.POSITIVE_INFINITY, distances[2]);
+        assertEquals(0, Math.min(pairs[4], pairs[5]));
+        assertEquals(1, Math.max(pairs[4], pairs[5]));
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        BatchClosestPair batch = new BatchClosestPair(8, 8);
+        double[] xs = new double[10];
+        double[] ys = new double[10];
+        assertThrows(IllegalArgumentException.class, () -> batch.solve(xs, ys, new int[0], new int[0], new double[0]));
+        assertThrows(IllegalArgumentException.class,
+                () -> batch.solve(xs, ys, new int[] {0, 5, 10}, new int[3], new double[2]));
+        assertThrows(IllegalArgumentException.class,
+                () -> batch.solve(xs, ys, new int[] {0, 6, 5}, new int[4], new double[2]));
+        assertThrows(IllegalArgumentException.class,
+                () -> batch.solve(xs, ys, new int[] {-1, 5}, new int[2], new double[1]));
+        assertThrows(IllegalArgumentException.class,
+                () -> batch.solve(xs, ys, new int[] {0, 11}, new int[2], new double[1]));
+        // An empty batch is fine
+        batch.solve(xs, ys, new int[] {0}, new int[0], new double[0]);
+    }
+
+    private static void assertMatchesBruteForce(BatchClosestPair batch, double[] xs, double[] ys, int[] offsets) {
+        int numSets = offsets.length - 1;
+        int[] pairs = new int[2 * numSets];
+        double[] distances = new double[numSets];
+        batch.solve(xs, ys, offsets, pairs, distances);
+        for (int set = 0; set < numSets; set++) {
+            int from = offsets[set];
+            int numPoints = offsets[set + 1] - from;
+            if (numPoints < 2) {
+                assertEquals(-1, pairs[2 * set]);
+                assertEquals(-1, pairs[2 * set + 1]);
+                assertEquals(Double.POSITIVE_INFINITY, distances[set]);
+                continue;
+            }
+            List<Point> points = new ArrayList<>();
+            for (int i = from; i < from + numPoints; i++) {
+                points.add(new Point(xs[i], ys[i]));
+            }
+            double expected = ClosestPair.bruteForce(points).getDistance();
+            assertEquals(expected, distances[set], "set " + set);
+            Point first = new Point(xs[from + pairs[2 * set]], ys[from + pairs[2 * set]]);
+            Point second = new Point(xs[from + pairs[2 * set + 1]], ys[from + pairs[2 * set + 1]]);
+            assertEquals(expected, ClosestPair.distance(first, second), "set " + set);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks BichromaticClosestPair against a nested loop over both sets, on
+ * sets of very different sizes, far apart clusters and squared distances
+ * that overflow or underflow.
+ */
+class BichromaticClosestPairTest {
+
+    @Test
+    void matchesNestedLoop() {
+        Random random = new Random(3);
+        for (int trial = 0; trial < 200; trial++) {
+            PointStore red = randomStore(random, 1 + random.nextInt(trial % 2 == 0 ? 10 : 300));
+            PointStore blue = randomStore(random, 1 + random.nextInt(trial % 3 == 0 ? 10 : 300));
+            Pair pair = BichromaticClosestPair.closestPair(red, blue);
+            assertEquals(nestedLoop(red, blue), pair.getDistance());
+            assertContains(red, pair.getPoint1());
+            assertContains(blue, pair.getPoint2());
+        }
+    }
+
+    @Test
+    void emptySet() {
+        PointStore store = store(1, 2, 3, 4);
+        assertNull(BichromaticClosestPair.closestPair(store, new PointStore()));
+        assertNull(BichromaticClosestPair.closestPair(new PointStore(), store));
+    }
+
+    @Test
+    void acceptsLists() {
+        List<Point> red = List.of(new Point(0, 0), new Point(10, 10));
+        List<Point> blue = List.of(new Point(9, 9), new Point(-3, 0), new Point(20, 20));
+        Pair pair = BichromaticClosestPair.closestPair(red, blue);
+        assertEquals(new Point(10, 10), pair.getPoint1());
+        assertEquals(new Point(9, 9), pair.getPoint2());
+    }
+
+    /**
+     * Two clusters of 10000 points 1e6 apart: every query starts far more
+     * cells away from the indexed set than the grid has.
+     */
+    @Test
+    void farApartClusters() {
+        Random random = new Random(5);
+        PointStore red = new PointStore();
+        PointStore blue = new PointStore();
+        for (int i = 0; i < 10_000; i++) {
+            red.add(random.nextDouble(), random.nextDouble());
+            blue.add(1e6 + 1 - random.nextDouble(), random.nextDouble());
+        }
+        // Every other pair is more than 999999 apart in x
+        red.add(1, 0.5);
+        blue.add(1e6, 0.5);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertEquals(999_999, BichromaticClosestPair.closestPair(red, blue).getDistance());
+            assertEquals(999_999, BichromaticClosestPair.closestPair(blue, red).getDistance());
+        });
+    }
+
+    @Test
+    void overflowingSquares() {
+        PointStore red = store(0, 0);
+        PointStore blue = store(1e200, 0, 0, 1e190, -1e250, 1e250);
+        assertEquals(1e190, BichromaticClosestPair.closestPair(red, blue).getDistance());
+        assertEquals(1e190, BichromaticClosestPair.closestPair(blue, red).getDistance());
+    }
+
+    @Test
+    void underflowingSquares() {
+        PointStore red = store(0, 0, 5, 5);
+        PointStore blue = store(1e-170, 0, 0, 1e-180, 4, 4);
+        assertEquals(1e-180, BichromaticClosestPair.closestPair(red, blue).getDistance());
+        assertEquals(1e-180, BichromaticClosestPair.closestPair(blue, red).getDistance());
+    }
+
+    private static double nestedLoop(PointStore red, PointStore blue) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < red.size(); i++) {
+            for (int j = 0; j < blue.size(); j++) {
+                best = Math.min(best, ClosestPair.distance(red.getPoint(i), blue.getPoint(j)));
+            }
+        }
+        return best;
+    }
+
+    private static void assertContains(PointStore store, Point point) {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            points.add(store.getPoint(i));
+        }
+        assertTrue(points.contains(point), () -> point + " is not in its set");
+    }
+
+    private static PointStore randomStore(Random random, int numPoints) {
+        PointStore store = new PointStore();
+        // A cluster at one of three centers 1e4 apart, so the indexed set is
+        // often far from the streamed one
+        double center = random.nextInt(3) * 1e4;
+        for (int i = 0; i < numPoints; i++) {
+            store.add(center + random.nextInt(50), center + random.nextInt(50));
+        }
+        return store;
+    }
+
+    private static PointStore store(double... coordinates) {
+        PointStore store = new PointStore();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            store.add(coordinates[i], coordinates[i + 1]);
+        }
+        return store;
+    }
+}
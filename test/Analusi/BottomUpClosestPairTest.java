@@ -0,0 +1,105 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks BottomUpClosestPair against ClosestPair.bruteForce and
+ * ArrayClosestPair, on inputs around the leaf and run sizes, and that one
+ * instance gives right answers when it is reused on inputs of other sizes.
+ */
+class BottomUpClosestPairTest {
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(19);
+        BottomUpClosestPair engine = new BottomUpClosestPair();
+        for (int trial = 0; trial < 500; trial++) {
+            List<Point> points = new ArrayList<>();
+            // Sizes around multiples of the leaf size leave partial leaves
+            // and runs without a partner
+            int numPoints = 2 + random.nextInt(8 * BottomUpClosestPair.LEAF_SIZE);
+            int range = trial % 2 == 0 ? 8 : 1_000_000;
+            for (int i = 0; i < numPoints; i++) {
+                points.add(new Point(random.nextInt(range), random.nextInt(range)));
+            }
+            double expected = ClosestPair.bruteForce(new ArrayList<>(points)).getDistance();
+            Pair pair = engine.initializeDivideAndConquer(points);
+            assertEquals(expected, pair.getDistance());
+            assertEquals(expected, ClosestPair.distance(pair.getPoint1(), pair.getPoint2()));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PointGenerator.Distribution.class)
+    void matchesArrayClosestPair(PointGenerator.Distribution distribution) {
+        PointStore store = new PointGenerator(19).generate(distribution, 20_000);
+        Pair expected = new ArrayClosestPair().closestPair(store);
+        Pair actual = new BottomUpClosestPair().closestPair(store);
+        assertEquals(expected.getDistance(), actual.getDistance());
+        assertEquals(expected.getDistance(), ClosestPair.distance(actual.getPoint1(), actual.getPoint2()));
+    }
+
+    /**
+     * Every call returns the same Pair, overwritten with the new result, and
+     * the buffers left by a larger input do not leak into a smaller one.
+     */
+    @Test
+    void reusesResultAndBuffers() {
+        BottomUpClosestPair engine = new BottomUpClosestPair();
+        PointGenerator generator = new PointGenerator(91);
+        Pair first = engine.closestPair(generator.generate(PointGenerator.Distribution.UNIFORM, 50_000));
+        for (int numPoints : new int[] {3, 17, 10_000, 2, 100_000, 33}) {
+            PointStore store = generator.generate(PointGenerator.Distribution.CLUSTERED, numPoints);
+            Pair pair = engine.closestPair(store);
+            assertSame(first, pair);
+            assertEquals(new ArrayClosestPair().closestPair(store).getDistance(), pair.getDistance());
+        }
+    }
+
+    @Test
+    void lessThanTwoPoints() {
+        BottomUpClosestPair engine = new BottomUpClosestPair();
+        PointStore store = new PointStore();
+        assertNull(engine.closestPair(store));
+        store.add(1, 2);
+        assertNull(engine.closestPair(store));
+        assertNull(engine.initializeDivideAndConquer(List.of(new Point(1, 2))));
+    }
+
+    @Test
+    void overflowingAndUnderflowingSquares() {
+        BottomUpClosestPair engine = new BottomUpClosestPair();
+        List<Point> points = List.of(new Point(0, 0), new Point(1e200, 0), new Point(0, 3e190),
+                new Point(-1e250, 1e250));
+        assertEquals(3e190, engine.initializeDivideAndConquer(points).getDistance());
+        points = List.of(new Point(0, 0), new Point(3e-170, 0), new Point(1e-170, 0), new Point(5, 5));
+        assertEquals(1e-170, engine.initializeDivideAndConquer(points).getDistance());
+    }
+
+    /**
+     * Every point has the same x, so every merge takes its whole run as the
+     * strip.
+     */
+    @Test
+    void verticalLine() {
+        PointStore store = new PointStore();
+        for (int i = 0; i < 100_000; i++) {
+            store.add(0.5, i);
+        }
+        store.add(0.5, 4321.25);
+        assertEquals(0.25, new BottomUpClosestPair().closestPair(store).getDistance());
+    }
+}
@@ -0,0 +1,143 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import Analusi.ClosestPair.Point;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Checks the counters ClosestPairMetrics adds up over runs of CP_1969, and the
+ * JFR event every such run emits.
+ */
+class ClosestPairMetricsTest {
+
+    private static final int NUM_POINTS = 5000;
+
+    @TempDir
+    Path workDirectory;
+
+    @Test
+    void countsOneRun() {
+        ClosestPairMetrics metrics = new ClosestPairMetrics();
+        CP_1969 engine = new CP_1969();
+        engine.setMetrics(metrics);
+        engine.initializeDivideAndConquer(points(1));
+        ClosestPairMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getRuns());
+        assertEquals(NUM_POINTS, snapshot.getPoints());
+        assertTrue(snapshot.getDistanceEvaluations() > 0);
+        assertTrue(snapshot.getBaseCases() > 0);
+        // Halving 5000 points down to base cases takes about log2(5000) levels
+        assertTrue(snapshot.getMaxDepth() >= 8 && snapshot.getMaxDepth() < 20, snapshot::toString);
+        // The top level is split once
+        assertEquals(1, snapshot.getStrips(0));
+        assertEquals(0, snapshot.getBaseCases(0));
+        assertTrue(snapshot.getStripPoints() >= snapshot.getStrips(0));
+        assertTrue(snapshot.getSortNanos() > 0);
+        assertTrue(snapshot.getSolveNanos() > 0);
+    }
+
+    @Test
+    void addsUpOverRunsAndEngines() {
+        ClosestPairMetrics metrics = new ClosestPairMetrics();
+        CP_1969 engine = new CP_1969();
+        engine.setMetrics(metrics);
+        engine.initializeDivideAndConquer(points(2));
+        ClosestPairMetrics.Snapshot first = metrics.snapshot();
+
+        CP_1969 other = new CP_1969();
+        other.setMetrics(metrics);
+        other.initializeDivideAndConquer(points(2));
+        ClosestPairMetrics.Snapshot both = metrics.snapshot();
+        assertEquals(2, both.getRuns());
+        assertEquals(2 * NUM_POINTS, both.getPoints());
+
+        // The same points take the same work
+        ClosestPairMetrics.Snapshot second = both.since(first);
+        assertEquals(1, second.getRuns());
+        assertEquals(first.getDistanceEvaluations(), second.getDistanceEvaluations());
+        assertEquals(first.getBaseCases(), second.getBaseCases());
+        assertEquals(first.getStripPoints(), second.getStripPoints());
+    }
+
+    @Test
+    void parallelRunCountsTheSameWork() {
+        ClosestPairMetrics sequential = new ClosestPairMetrics();
+        CP_1969 engine = new CP_1969();
+        engine.setMetrics(sequential);
+        engine.initializeDivideAndConquer(points(3));
+
+        ClosestPairMetrics parallel = new ClosestPairMetrics();
+        engine = new CP_1969(64);
+        engine.setMetrics(parallel);
+        engine.initializeDivideAndConquer(points(3));
+
+        assertEquals(sequential.snapshot().getBaseCases(), parallel.snapshot().getBaseCases());
+        assertEquals(sequential.snapshot().getStrips(), parallel.snapshot().getStrips());
+        assertEquals(sequential.snapshot().getDistanceEvaluations(), parallel.snapshot().getDistanceEvaluations());
+    }
+
+    @Test
+    void resetClearsEverything() {
+        ClosestPairMetrics metrics = new ClosestPairMetrics();
+        CP_1969 engine = new CP_1969();
+        engine.setMetrics(metrics);
+        engine.initializeDivideAndConquer(points(4));
+        metrics.reset();
+        ClosestPairMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getRuns());
+        assertEquals(0, snapshot.getPoints());
+        assertEquals(0, snapshot.getDistanceEvaluations());
+        assertEquals(0, snapshot.getBaseCases());
+        assertEquals(0, snapshot.getStrips());
+        assertEquals(-1, snapshot.getMaxDepth());
+    }
+
+    @Test
+    void deepLevelsAreCountedInTheLastOne() {
+        ClosestPairMetrics metrics = new ClosestPairMetrics();
+        metrics.baseCase(ClosestPairMetrics.MAX_LEVELS + 10);
+        metrics.strip(ClosestPairMetrics.MAX_LEVELS, 7);
+        ClosestPairMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(ClosestPairMetrics.MAX_LEVELS - 1, snapshot.getMaxDepth());
+        assertEquals(1, snapshot.getStrips(ClosestPairMetrics.MAX_LEVELS - 1));
+        assertEquals(7, snapshot.getStripPoints(ClosestPairMetrics.MAX_LEVELS - 1));
+    }
+
+    @Test
+    void emitsJfrEvent() throws IOException {
+        ClosestPairMetrics metrics = new ClosestPairMetrics();
+        CP_1969 engine = new CP_1969();
+        engine.setMetrics(metrics);
+        Path file = workDirectory.resolve("run.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("Analusi.ClosestPair");
+            recording.start();
+            engine.initializeDivideAndConquer(points(5));
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        events.removeIf(event -> !event.getEventType().getName().equals("Analusi.ClosestPair"));
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("CP_1969", event.getString("engine"));
+        assertEquals(NUM_POINTS, event.getInt("points"));
+        assertEquals(metrics.snapshot().getDistanceEvaluations(), event.getLong("distanceEvaluations"));
+        assertEquals(metrics.snapshot().getBaseCases(), event.getLong("baseCases"));
+    }
+
+    private static List<Point> points(long seed) {
+        return new PointGenerator(seed).generatePoints(PointGenerator.Distribution.UNIFORM, NUM_POINTS);
+    }
+}
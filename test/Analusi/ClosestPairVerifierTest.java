@@ -0,0 +1,361 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Certifies the results of every engine with ClosestPairVerifier, on the
+ * distributions of PointGenerator and on inputs made to break squared
+ * distances, duplicates and ties. The verifier itself is checked against
+ * ClosestPair.bruteForce.
+ */
+class ClosestPairVerifierTest {
+
+    private static final int NUM_POINTS = 20_000;
+    private static final double LATTICE_SCALE = 1.0 / 64;
+    // Small slabs, so that OutOfCoreClosestPair carries points between many
+    private static final int SLAB_POINTS = 1000;
+
+    private static final Map<String, PointStore> ADVERSARIAL_INPUTS = adversarialInputs();
+    // The bruteForce distance of every adversarial input, filled on first use
+    private static final Map<String, Double> CLOSEST_DISTANCES = new ConcurrentHashMap<>();
+
+    @TempDir
+    static Path workDirectory;
+
+    /**
+     * A new engine for every input, so no engine carries state over from one
+     * input to the next. The queries that are not a closest pair of a whole
+     * point set are turned into one: BichromaticClosestPair and
+     * SpatialIndex.nearest solve the pairs across the two halves of the set
+     * (see splitting), QuantizedClosestPair only runs on inputs whose points
+     * are on its lattice, and OutOfCoreClosestPair reads the points from a
+     * file.
+     */
+    private static Map<String, Supplier<Function<PointStore, Pair>>> engines() {
+        Map<String, Supplier<Function<PointStore, Pair>>> engines = new LinkedHashMap<>();
+        engines.put("PresortedClosestPair",
+                () -> store -> new PresortedClosestPair().initializeDivideAndConquer(toList(store)));
+        engines.put("CP_1969", () -> cp1969(new CP_1969(), false));
+        engines.put("CP_1969 parallel", () -> cp1969(new CP_1969(64), false));
+        engines.put("CP_1969 squared", () -> cp1969(new CP_1969(), true));
+        engines.put("CP_1969 parallel squared", () -> cp1969(new CP_1969(64), true));
+        engines.put("ArrayClosestPair", () -> new ArrayClosestPair()::closestPair);
+        engines.put("BottomUpClosestPair", () -> new BottomUpClosestPair()::closestPair);
+        engines.put("GridClosestPair", () -> new GridClosestPair()::closestPair);
+        engines.put("KdClosestPair", () -> new KdClosestPair()::closestPair);
+        engines.put("ClosestPairPlanner", () -> new ClosestPairPlanner()::closestPair);
+        engines.put("WarmStartClosestPair", () -> new WarmStartClosestPair()::closestPair);
+        engines.put("BatchClosestPair", () -> batch(new BatchClosestPair(0, 16)));
+        engines.put("BatchClosestPair brute force", () -> batch(new BatchClosestPair(Integer.MAX_VALUE, 16)));
+        engines.put("BichromaticClosestPair", () -> store -> splitting(store, BichromaticClosestPair::closestPair));
+        engines.put("SpatialIndex nearest", () -> store -> splitting(store, ClosestPairVerifierTest::nearestAcross));
+        engines.put("SpatialIndex box", () -> store -> {
+            double infinity = Double.POSITIVE_INFINITY;
+            return toPair(store, new SpatialIndex(store).closestPairInBox(-infinity, -infinity, infinity, infinity));
+        });
+        engines.put("DynamicClosestPair", () -> store -> {
+            DynamicClosestPair dynamic = new DynamicClosestPair();
+            for (int i = 0; i < store.size(); i++) {
+                dynamic.insert(store.getPoint(i));
+            }
+            return dynamic.closestPair();
+        });
+        engines.put("QuantizedClosestPair", () -> store -> {
+            assumeTrue(onLattice(store, LATTICE_SCALE), "the points are not on the lattice");
+            return new QuantizedClosestPair(LATTICE_SCALE).initializeDivideAndConquer(toList(store));
+        });
+        engines.put("OutOfCoreClosestPair", () -> ClosestPairVerifierTest::outOfCore);
+        return engines;
+    }
+
+    /**
+     * The closest pair of a set is the closest of the closest pairs of its two
+     * halves and the closest pair with a point in each half, which is found by
+     * the given query.
+     */
+    private static Pair splitting(PointStore store, BiFunction<PointStore, PointStore, Pair> across) {
+        int numPoints = store.size();
+        if (numPoints < 2) {
+            return null;
+        }
+        PointStore first = new PointStore();
+        PointStore second = new PointStore();
+        for (int i = 0; i < numPoints; i++) {
+            (i < numPoints / 2 ? first : second).add(store.getX(i), store.getY(i));
+        }
+        Pair closest = across.apply(first, second);
+        for (PointStore half : List.of(first, second)) {
+            Pair pair = splitting(half, across);
+            if (pair != null && pair.getDistance() < closest.getDistance()) {
+                closest = pair;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * The closest pair with a point in each set, from the nearest indexed
+     * point of every point of the second set.
+     */
+    private static Pair nearestAcross(PointStore indexed, PointStore queries) {
+        SpatialIndex index = new SpatialIndex(indexed);
+        Pair closest = null;
+        for (int i = 0; i < queries.size(); i++) {
+            Point query = queries.getPoint(i);
+            Pair pair = new Pair(indexed.getPoint(index.nearest(query.getX(), query.getY())), query);
+            if (closest == null || pair.getDistance() < closest.getDistance()) {
+                closest = pair;
+            }
+        }
+        return closest;
+    }
+
+    private static boolean onLattice(PointStore store, double scale) {
+        for (int i = 0; i < store.size(); i++) {
+            for (double coordinate : new double[] {store.getX(i), store.getY(i)}) {
+                double steps = Math.rint(coordinate / scale);
+                if (!(Math.abs(steps) <= QuantizedPointStore.MAX_COORDINATE) || steps * scale != coordinate) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Pair outOfCore(PointStore store) {
+        try {
+            Path file = Files.createTempFile(workDirectory, "points", ".bin");
+            MappedPointFile.write(file, store);
+            return new OutOfCoreClosestPair(SLAB_POINTS, workDirectory).closestPair(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Pair toPair(PointStore store, IndexPair pair) {
+        return new Pair(store.getPoint(pair.getFirst()), store.getPoint(pair.getSecond()));
+    }
+
+    private static Function<PointStore, Pair> cp1969(CP_1969 engine, boolean squaredDistances) {
+        engine.setSquaredDistances(squaredDistances);
+        return store -> engine.initializeDivideAndConquer(toList(store));
+    }
+
+    private static Function<PointStore, Pair> batch(BatchClosestPair engine) {
+        return store -> {
+            int[] pairs = new int[2];
+            engine.solve(store.xs, store.ys, new int[] {0, store.size()}, pairs, new double[1]);
+            return new Pair(store.getPoint(pairs[0]), store.getPoint(pairs[1]));
+        };
+    }
+
+    /**
+     * Inputs whose squared distances overflow or underflow, with duplicates,
+     * or with many pairs at the closest distance.
+     */
+    private static Map<String, PointStore> adversarialInputs() {
+        Map<String, PointStore> inputs = new LinkedHashMap<>();
+        inputs.put("squares overflow", store(0, 0, 1e200, 0, -1e200, 0));
+        inputs.put("squares overflow on both axes", store(1e200, 1e200, -1e200, -1e200, 1e200, -1e200, 3e200, 3e200));
+        inputs.put("largest doubles", store(Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+                -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE));
+        inputs.put("square underflows", store(0, 0, 1e-100, 0, 0.7, 0.7, 0.7, 0.7));
+        inputs.put("square underflows beside equal points", store(0.7, 0.7, 0.7, 0.7, 0, 0, 1e-200, 0));
+        inputs.put("subnormal coordinates", store(0, 0, Double.MIN_VALUE, 0, 3 * Double.MIN_VALUE, 0,
+                0, 2 * Double.MIN_VALUE));
+        inputs.put("negative zero", store(0.0, 1, -0.0, 1, 0.5, 0.5));
+
+        Random random = new Random(1969);
+        PointStore spread = new PointStore();
+        for (int i = 0; i < 3000; i++) {
+            spread.add((random.nextDouble() - 0.5) * 1e300, (random.nextDouble() - 0.5) * 1e300);
+        }
+        spread.add(spread.getX(0) + Math.ulp(spread.getX(0)), spread.getY(0));
+        inputs.put("spread 1e300 with an ulp pair", spread);
+
+        PointStore tinyPair = new PointStore();
+        for (int i = 0; i < 3000; i++) {
+            tinyPair.add(random.nextDouble(), random.nextDouble());
+        }
+        tinyPair.add(1e-170, 0);
+        tinyPair.add(3e-170, 0);
+        inputs.put("uniform with an underflowing pair", tinyPair);
+
+        for (double scale : new double[] {1e-170, 1e-300}) {
+            PointStore tiny = new PointStore();
+            for (int i = 0; i < 3000; i++) {
+                tiny.add(random.nextDouble() * scale, random.nextDouble() * scale);
+            }
+            inputs.put("uniform times " + scale, tiny);
+        }
+
+        PointStore lattice = new PointStore();
+        for (int i = 0; i < 4096; i++) {
+            lattice.add(i % 64, i / 64);
+        }
+        inputs.put("lattice ties", lattice);
+
+        PointStore equal = new PointStore();
+        for (int i = 0; i < 2000; i++) {
+            equal.add(0.25, -3);
+        }
+        inputs.put("all points equal", equal);
+
+        PointStore duplicates = new PointStore();
+        for (int i = 0; i < 5000; i++) {
+            duplicates.add(random.nextInt(40), random.nextInt(40));
+        }
+        inputs.put("many duplicates", duplicates);
+
+        PointStore line = new PointStore();
+        for (int i = 0; i < 5000; i++) {
+            line.add(7, i * 0.5);
+        }
+        inputs.put("vertical line ties", line);
+        return inputs;
+    }
+
+    static Stream<Arguments> enginesOnDistributions() {
+        List<Arguments> arguments = new ArrayList<>();
+        for (String engine : engines().keySet()) {
+            for (PointGenerator.Distribution distribution : PointGenerator.Distribution.values()) {
+                arguments.add(Arguments.of(engine, distribution));
+            }
+        }
+        return arguments.stream();
+    }
+
+    static Stream<Arguments> enginesOnAdversarialInputs() {
+        List<Arguments> arguments = new ArrayList<>();
+        for (String engine : engines().keySet()) {
+            for (String input : ADVERSARIAL_INPUTS.keySet()) {
+                arguments.add(Arguments.of(engine, input));
+            }
+        }
+        return arguments.stream();
+    }
+
+    static Stream<String> adversarialInputNames() {
+        return ADVERSARIAL_INPUTS.keySet().stream();
+    }
+
+    @ParameterizedTest(name = "{0} on {1}")
+    @MethodSource("enginesOnDistributions")
+    void certifiesEngineOnDistribution(String engine, PointGenerator.Distribution distribution) {
+        PointStore store = new PointGenerator(1969).generate(distribution, NUM_POINTS);
+        Pair pair = engines().get(engine).get().apply(store);
+        assertTrue(ClosestPairVerifier.certify(store, pair), () -> engine + " found " + pair);
+    }
+
+    @ParameterizedTest(name = "{0} on {1}")
+    @MethodSource("enginesOnAdversarialInputs")
+    void certifiesEngineOnAdversarialInput(String engine, String input) {
+        PointStore store = ADVERSARIAL_INPUTS.get(input);
+        Pair pair = engines().get(engine).get().apply(store);
+        assertEquals(closestDistance(input), pair.getDistance(), () -> engine + " found " + pair);
+        assertTrue(ClosestPairVerifier.certify(store, pair), () -> engine + " found " + pair);
+    }
+
+    /**
+     * Of the pairs among the first points of an adversarial input, the
+     * verifier certifies exactly the closest ones.
+     */
+    @ParameterizedTest
+    @MethodSource("adversarialInputNames")
+    void rejectsPairsThatAreNotClosest(String input) {
+        PointStore store = ADVERSARIAL_INPUTS.get(input);
+        double closest = closestDistance(input);
+        int numPoints = Math.min(store.size(), 20);
+        for (int i = 0; i < numPoints; i++) {
+            for (int j = i + 1; j < numPoints; j++) {
+                Pair pair = new Pair(store.getPoint(i), store.getPoint(j));
+                assertEquals(pair.getDistance() == closest, ClosestPairVerifier.certify(store, pair),
+                        () -> pair + " in " + input);
+            }
+        }
+    }
+
+    @Test
+    void agreesWithBruteForceOnRandomClaims() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 500; trial++) {
+            int numPoints = 2 + random.nextInt(100);
+            PointStore store = new PointStore();
+            for (int i = 0; i < numPoints; i++) {
+                // Small integer coordinates make ties and duplicates common
+                store.add(random.nextInt(12), random.nextInt(12));
+            }
+            double closest = ClosestPair.bruteForce(toList(store)).getDistance();
+            int first = random.nextInt(numPoints);
+            int second = (first + 1 + random.nextInt(numPoints - 1)) % numPoints;
+            Pair claim = new Pair(store.getPoint(first), store.getPoint(second));
+            assertEquals(claim.getDistance() == closest, ClosestPairVerifier.certify(store, claim));
+            IndexPair closer = ClosestPairVerifier.findCloserPair(store, first, second);
+            if (claim.getDistance() == closest) {
+                assertNull(closer);
+            } else {
+                assertNotNull(closer);
+                assertTrue(closer.getDistance() < claim.getDistance());
+            }
+        }
+    }
+
+    @Test
+    void rejectsMalformedClaims() {
+        PointStore store = store(0, 0, 1, 0, 5, 5);
+        assertFalse(ClosestPairVerifier.certify(store, new Pair(new Point(0, 0), new Point(0.5, 0))));
+        assertFalse(ClosestPairVerifier.certify(store, new Pair(new Point(0, 0), new Point(0, 0))));
+        assertFalse(ClosestPairVerifier.certify(store, null));
+        assertTrue(ClosestPairVerifier.certify(store(3, 4), null));
+    }
+
+    private static double closestDistance(String input) {
+        return CLOSEST_DISTANCES.computeIfAbsent(input,
+                name -> ClosestPair.bruteForce(toList(ADVERSARIAL_INPUTS.get(name))).getDistance());
+    }
+
+    private static PointStore store(double... coordinates) {
+        PointStore store = new PointStore();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            store.add(coordinates[i], coordinates[i + 1]);
+        }
+        return store;
+    }
+
+    private static List<Point> toList(PointStore store) {
+        List<Point> points = new ArrayList<>(store.size());
+        for (int i = 0; i < store.size(); i++) {
+            points.add(store.getPoint(i));
+        }
+        return points;
+    }
+}
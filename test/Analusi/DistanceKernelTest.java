@@ -0,0 +1,91 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks that the vector kernel returns exactly the index the scalar kernel
+ * returns, on ranges of every length and offset, with ties and bounds. The
+ * tests run with --add-modules jdk.incubator.vector, so get() has to be the
+ * vector kernel.
+ */
+class DistanceKernelTest {
+
+    private static final DistanceKernel VECTOR = DistanceKernel.get();
+    private static final DistanceKernel SCALAR = DistanceKernel.scalar();
+
+    @Test
+    void vectorKernelIsLoaded() {
+        assertEquals("VectorDistanceKernel", VECTOR.getClass().getSimpleName());
+    }
+
+    @Test
+    void nearestMatchesScalar() {
+        Random random = new Random(10);
+        double[] xs = new double[100];
+        double[] ys = new double[100];
+        for (int trial = 0; trial < 20_000; trial++) {
+            // Few distinct coordinates, so ties between lanes are common
+            int range = trial % 2 == 0 ? 4 : 1_000_000;
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = random.nextInt(range);
+                ys[i] = random.nextInt(range);
+            }
+            int from = random.nextInt(xs.length);
+            int to = from + random.nextInt(xs.length - from + 1);
+            double x = random.nextInt(range);
+            double y = random.nextInt(range);
+            double bound = random.nextBoolean() ? Double.POSITIVE_INFINITY : random.nextInt(range) * (double) range;
+            assertEquals(SCALAR.nearest(xs, ys, from, to, x, y, bound), VECTOR.nearest(xs, ys, from, to, x, y, bound),
+                    () -> "range [" + from + ", " + to + ")");
+        }
+    }
+
+    @Test
+    void nearestReturnsFirstOfEqualDistances() {
+        double[] xs = {5, 1, 0, -1, 0, 1, 0, -1, 0, 1, 3};
+        double[] ys = {5, 0, 1, 0, -1, 0, 1, 0, -1, 0, 3};
+        for (DistanceKernel kernel : new DistanceKernel[] {SCALAR, VECTOR}) {
+            assertEquals(1, kernel.nearest(xs, ys, 0, xs.length, 0, 0, Double.POSITIVE_INFINITY));
+            assertEquals(2, kernel.nearest(xs, ys, 2, xs.length, 0, 0, Double.POSITIVE_INFINITY));
+            assertEquals(6, kernel.nearest(xs, ys, 6, xs.length - 1, 0, 0, Double.POSITIVE_INFINITY));
+        }
+    }
+
+    @Test
+    void nearestRespectsBound() {
+        double[] xs = {3, 4, 0, 10};
+        double[] ys = {4, 3, 5, 10};
+        for (DistanceKernel kernel : new DistanceKernel[] {SCALAR, VECTOR}) {
+            // Every squared distance is 25, which is not below the bound
+            assertEquals(-1, kernel.nearest(xs, ys, 0, 3, 0, 0, 25));
+            assertEquals(0, kernel.nearest(xs, ys, 0, 3, 0, 0, Math.nextUp(25)));
+            assertEquals(-1, kernel.nearest(xs, ys, 2, 2, 0, 0, Double.POSITIVE_INFINITY));
+        }
+    }
+
+    @Test
+    void bruteForceMatchesClosestPair() {
+        Random random = new Random(100);
+        for (int trial = 0; trial < 200; trial++) {
+            List<Point> points = new ArrayList<>();
+            int numPoints = 2 + random.nextInt(100);
+            for (int i = 0; i < numPoints; i++) {
+                points.add(new Point(random.nextInt(50), random.nextInt(50)));
+            }
+            double expected = ClosestPair.bruteForce(new ArrayList<>(points)).getDistance();
+            PointStore store = PointStore.fromPoints(points);
+            assertEquals(expected, SCALAR.bruteForce(store).getDistance());
+            assertEquals(expected, VECTOR.bruteForce(store).getDistance());
+        }
+        assertNull(VECTOR.bruteForce(new PointStore()));
+    }
+}
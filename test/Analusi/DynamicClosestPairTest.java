@@ -0,0 +1,156 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks DynamicClosestPair against ClosestPair.bruteForce on the live points
+ * after inserts and removes, including points far apart, in clusters and with
+ * squared distances that overflow or underflow.
+ */
+class DynamicClosestPairTest {
+
+    @Test
+    void matchesBruteForceUnderChurn() {
+        Random random = new Random(7);
+        DynamicClosestPair dynamic = new DynamicClosestPair();
+        List<Point> live = new ArrayList<>();
+        for (int step = 0; step < 2000; step++) {
+            if (live.size() > 2 && random.nextInt(3) == 0) {
+                Point point = live.remove(random.nextInt(live.size()));
+                assertTrue(dynamic.remove(point));
+            } else {
+                // Small integer coordinates make duplicates and ties common
+                Point point = new Point(random.nextInt(30), random.nextInt(30));
+                live.add(point);
+                dynamic.insert(point);
+            }
+            assertEquals(live.size(), dynamic.size());
+            if (step % 10 == 0) {
+                assertClosest(live, dynamic);
+            }
+        }
+    }
+
+    @Test
+    void fewPoints() {
+        DynamicClosestPair dynamic = new DynamicClosestPair();
+        assertNull(dynamic.closestPair());
+        dynamic.insert(new Point(1, 2));
+        assertNull(dynamic.closestPair());
+        assertFalse(dynamic.remove(new Point(2, 1)));
+        dynamic.insert(new Point(1, 3));
+        assertEquals(1, dynamic.closestPair().getDistance());
+        assertTrue(dynamic.remove(new Point(1, 2)));
+        assertNull(dynamic.closestPair());
+    }
+
+    /**
+     * The second point is many cells of the first grid away.
+     */
+    @ParameterizedTest
+    @ValueSource(doubles = {1e4, 1e5, 1e12})
+    void farApartPoints(double gap) {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            DynamicClosestPair dynamic = new DynamicClosestPair();
+            dynamic.insert(new Point(0, 0));
+            dynamic.insert(new Point(gap, 0));
+            assertEquals(gap, dynamic.closestPair().getDistance());
+            dynamic.insert(new Point(-gap, 1));
+            assertEquals(gap, dynamic.closestPair().getDistance());
+        });
+    }
+
+    /**
+     * Two clusters 1e6 apart, filled and emptied in turns, so most searches
+     * start in a cluster while the grid has cells sized for the other one.
+     */
+    @Test
+    void clusteredChurn() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            Random random = new Random(11);
+            DynamicClosestPair dynamic = new DynamicClosestPair();
+            List<Point> live = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                double center = round % 2 == 0 ? 0 : 1e6;
+                for (int i = 0; i < 500; i++) {
+                    Point point = new Point(center + random.nextDouble(), random.nextDouble());
+                    live.add(point);
+                    dynamic.insert(point);
+                }
+                assertClosest(live, dynamic);
+                for (int i = 0; i < 400; i++) {
+                    assertTrue(dynamic.remove(live.remove(random.nextInt(live.size()))));
+                }
+                assertClosest(live, dynamic);
+            }
+        });
+    }
+
+    @Test
+    void hugeCoordinates() {
+        DynamicClosestPair dynamic = new DynamicClosestPair();
+        dynamic.insert(new Point(-1e300, 0));
+        dynamic.insert(new Point(1e300, 0));
+        assertEquals(2e300, dynamic.closestPair().getDistance());
+        dynamic.insert(new Point(-Double.MAX_VALUE, 5));
+        dynamic.insert(new Point(1e300, 1e299));
+        assertEquals(1e299, dynamic.closestPair().getDistance());
+        // A point beyond the cells of the grid
+        dynamic.insert(new Point(Double.MAX_VALUE, 1e299));
+        assertEquals(1e299, dynamic.closestPair().getDistance());
+    }
+
+    @Test
+    void infinitelyFarPoints() {
+        DynamicClosestPair dynamic = new DynamicClosestPair();
+        dynamic.insert(new Point(Double.MAX_VALUE, Double.MAX_VALUE));
+        dynamic.insert(new Point(-Double.MAX_VALUE, -Double.MAX_VALUE));
+        assertEquals(Double.POSITIVE_INFINITY, dynamic.closestPair().getDistance());
+        dynamic.insert(new Point(Double.MAX_VALUE, -Double.MAX_VALUE));
+        dynamic.remove(new Point(-Double.MAX_VALUE, -Double.MAX_VALUE));
+        assertEquals(Double.POSITIVE_INFINITY, dynamic.closestPair().getDistance());
+        dynamic.insert(new Point(Double.MAX_VALUE, 0));
+        assertEquals(Double.MAX_VALUE, dynamic.closestPair().getDistance());
+    }
+
+    /**
+     * The squares of both close pairs underflow to 0.
+     */
+    @Test
+    void underflowingSquares() {
+        DynamicClosestPair dynamic = new DynamicClosestPair();
+        dynamic.insert(new Point(0, 0));
+        dynamic.insert(new Point(3e-170, 0));
+        dynamic.insert(new Point(1e-170, 0));
+        dynamic.insert(new Point(5, 5));
+        assertEquals(1e-170, dynamic.closestPair().getDistance());
+        dynamic.remove(new Point(0, 0));
+        assertEquals(ClosestPair.distance(new Point(1e-170, 0), new Point(3e-170, 0)),
+                dynamic.closestPair().getDistance());
+    }
+
+    private static void assertClosest(List<Point> live, DynamicClosestPair dynamic) {
+        Pair pair = dynamic.closestPair();
+        if (live.size() < 2) {
+            assertNull(pair);
+            return;
+        }
+        assertEquals(ClosestPair.bruteForce(new ArrayList<>(live)).getDistance(), pair.getDistance());
+    }
+}
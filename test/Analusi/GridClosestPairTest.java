@@ -0,0 +1,124 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks GridClosestPair against ArrayClosestPair and ClosestPair.bruteForce,
+ * including the inputs it hands to ArrayClosestPair because their cells or
+ * squared distances do not fit the grid.
+ */
+class GridClosestPairTest {
+
+    @ParameterizedTest
+    @EnumSource(PointGenerator.Distribution.class)
+    void matchesArrayClosestPair(PointGenerator.Distribution distribution) {
+        PointStore store = new PointGenerator(6).generate(distribution, 20_000);
+        Pair expected = new ArrayClosestPair().closestPair(store);
+        Pair actual = new GridClosestPair(6).closestPair(store);
+        assertEquals(expected.getDistance(), actual.getDistance());
+        assertEquals(expected.getDistance(), ClosestPair.distance(actual.getPoint1(), actual.getPoint2()));
+    }
+
+    @Test
+    void matchesBruteForceOnSmallInputs() {
+        Random random = new Random(66);
+        GridClosestPair grid = new GridClosestPair(66);
+        for (int trial = 0; trial < 300; trial++) {
+            List<Point> points = new ArrayList<>();
+            int numPoints = 2 + random.nextInt(60);
+            for (int i = 0; i < numPoints; i++) {
+                // Small integer coordinates make duplicates and ties common
+                points.add(new Point(random.nextInt(25), random.nextInt(25)));
+            }
+            assertEquals(ClosestPair.bruteForce(new ArrayList<>(points)).getDistance(),
+                    grid.initializeDivideAndConquer(points).getDistance());
+        }
+    }
+
+    @Test
+    void sameSeedGivesSamePair() {
+        // Many pairs at the same distance, so the shuffle decides which one
+        // is reported
+        PointStore store = new PointStore();
+        for (int x = 0; x < 100; x++) {
+            for (int y = 0; y < 100; y++) {
+                store.add(x, y);
+            }
+        }
+        Pair expected = new GridClosestPair(1969).closestPair(store);
+        for (int run = 0; run < 5; run++) {
+            Pair actual = new GridClosestPair(1969).closestPair(store);
+            assertEquals(expected.getPoint1(), actual.getPoint1());
+            assertEquals(expected.getPoint2(), actual.getPoint2());
+        }
+    }
+
+    @Test
+    void lessThanTwoPoints() {
+        GridClosestPair grid = new GridClosestPair(1);
+        PointStore store = new PointStore();
+        assertNull(grid.closestPair(store));
+        store.add(1, 2);
+        assertNull(grid.closestPair(store));
+        assertNull(grid.initializeDivideAndConquer(new ArrayList<>()));
+    }
+
+    /**
+     * The closest distance is so small next to the coordinates that a cell
+     * index would not fit.
+     */
+    @Test
+    void fallsBackOnTinyCells() {
+        List<Point> points = new ArrayList<>();
+        points.add(new Point(1e12, 1e12));
+        points.add(new Point(1e12, 1e12 + 1e-3));
+        points.add(new Point(-1e12, 5));
+        points.add(new Point(7, -1e12));
+        assertEquals(ClosestPair.bruteForce(new ArrayList<>(points)).getDistance(),
+                new GridClosestPair(2).initializeDivideAndConquer(points).getDistance());
+    }
+
+    @Test
+    void fallsBackOnOverflowingSquares() {
+        PointStore store = new PointStore();
+        store.add(0, 0);
+        store.add(1e200, 0);
+        store.add(0, 3e190);
+        store.add(-1e250, 1e250);
+        assertEquals(3e190, new GridClosestPair(3).closestPair(store).getDistance());
+    }
+
+    @Test
+    void fallsBackOnUnderflowingSquares() {
+        PointStore store = new PointStore();
+        store.add(0, 0);
+        store.add(3e-170, 0);
+        store.add(1e-170, 0);
+        store.add(5, 5);
+        assertEquals(1e-170, new GridClosestPair(4).closestPair(store).getDistance());
+    }
+
+    @Test
+    void duplicatePoints() {
+        PointStore store = new PointStore();
+        for (int i = 0; i < 1000; i++) {
+            store.add(i, i);
+        }
+        store.add(500, 500);
+        Pair pair = new GridClosestPair(5).closestPair(store);
+        assertEquals(0, pair.getDistance());
+        assertEquals(new Point(500, 500), pair.getPoint1());
+    }
+}
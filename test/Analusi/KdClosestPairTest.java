@@ -0,0 +1,144 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import Analusi.ClosestPair.Pair;
+
+/**
+ * Checks PointCloud and KdClosestPair against a nested loop over the points of
+ * a cloud in several dimensions, and against ArrayClosestPair in two.
+ */
+class KdClosestPairTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 8})
+    void matchesNestedLoop(int dimension) {
+        Random random = new Random(dimension);
+        KdClosestPair engine = new KdClosestPair();
+        for (int trial = 0; trial < 100; trial++) {
+            PointCloud cloud = new PointCloud(dimension);
+            int numPoints = 2 + random.nextInt(300);
+            // Small integer coordinates make duplicates and ties common
+            int range = trial % 2 == 0 ? 6 : 1_000_000;
+            for (int i = 0; i < numPoints; i++) {
+                double[] point = new double[dimension];
+                for (int axis = 0; axis < dimension; axis++) {
+                    point[axis] = random.nextInt(range);
+                }
+                cloud.add(point);
+            }
+            IndexPair pair = engine.closestPair(cloud);
+            assertTrue(pair.getFirst() != pair.getSecond());
+            assertEquals(nestedLoop(cloud), pair.getDistance());
+            assertEquals(distance(cloud, pair.getFirst(), pair.getSecond()), pair.getDistance());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PointGenerator.Distribution.class)
+    void matchesArrayClosestPairInPlane(PointGenerator.Distribution distribution) {
+        PointStore store = new PointGenerator(15).generate(distribution, 20_000);
+        Pair expected = new ArrayClosestPair().closestPair(store);
+        Pair actual = new KdClosestPair().closestPair(store);
+        assertEquals(expected.getDistance(), actual.getDistance());
+        assertEquals(expected.getDistance(), ClosestPair.distance(actual.getPoint1(), actual.getPoint2()));
+    }
+
+    /**
+     * In the plane the squares that overflow or underflow are solved again
+     * with hypot distances.
+     */
+    @Test
+    void inexactSquaresInPlane() {
+        PointCloud cloud = new PointCloud(2);
+        cloud.add(0, 0);
+        cloud.add(1e200, 0);
+        cloud.add(0, 3e190);
+        cloud.add(-1e250, 1e250);
+        assertEquals(3e190, new KdClosestPair().closestPair(cloud).getDistance());
+        cloud = new PointCloud(2);
+        cloud.add(0, 0);
+        cloud.add(3e-170, 0);
+        cloud.add(1e-170, 0);
+        cloud.add(5, 5);
+        assertEquals(1e-170, new KdClosestPair().closestPair(cloud).getDistance());
+    }
+
+    @Test
+    void lessThanTwoPoints() {
+        PointCloud cloud = new PointCloud(3);
+        assertNull(new KdClosestPair().closestPair(cloud));
+        cloud.add(1, 2, 3);
+        assertNull(new KdClosestPair().closestPair(cloud));
+    }
+
+    @Test
+    void cloudGrowsAndCopiesPoints() {
+        PointCloud cloud = new PointCloud(3, 1);
+        for (int i = 0; i < 100; i++) {
+            cloud.add(i, 2 * i, 3 * i);
+        }
+        assertEquals(100, cloud.size());
+        assertEquals(3, cloud.getDimension());
+        assertEquals(198, cloud.get(99, 1));
+        double[] point = cloud.getPoint(7);
+        assertArrayEquals(new double[] {7, 14, 21}, point);
+        point[0] = -1;
+        assertEquals(7, cloud.get(7, 0));
+    }
+
+    @Test
+    void cloudFromStoreKeepsIndices() {
+        PointStore store = new PointStore();
+        store.add(1, 2);
+        store.add(3, 4);
+        PointCloud cloud = PointCloud.fromStore(store);
+        assertEquals(2, cloud.size());
+        assertArrayEquals(new double[] {3, 4}, cloud.getPoint(1));
+    }
+
+    @Test
+    void cloudRejectsBadShapes() {
+        assertThrows(IllegalArgumentException.class, () -> new PointCloud(0));
+        assertThrows(IllegalArgumentException.class, () -> new PointCloud(3, new double[7]));
+        assertThrows(IllegalArgumentException.class, () -> new PointCloud(3).add(1, 2));
+        assertEquals(2, new PointCloud(3, new double[6]).size());
+    }
+
+    private static double nestedLoop(PointCloud cloud) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < cloud.size(); i++) {
+            for (int j = i + 1; j < cloud.size(); j++) {
+                best = Math.min(best, distance(cloud, i, j));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The distance the engine reports: hypot in the plane, the square root of
+     * the sum of squares otherwise.
+     */
+    private static double distance(PointCloud cloud, int first, int second) {
+        if (cloud.getDimension() == 2) {
+            return ClosestPair.hypot(cloud.get(second, 0) - cloud.get(first, 0), cloud.get(second, 1) - cloud.get(first, 1));
+        }
+        double sum = 0;
+        for (int axis = 0; axis < cloud.getDimension(); axis++) {
+            double delta = cloud.get(second, axis) - cloud.get(first, axis);
+            sum += delta * delta;
+        }
+        return Math.sqrt(sum);
+    }
+}
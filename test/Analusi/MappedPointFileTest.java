@@ -0,0 +1,163 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import Analusi.ClosestPair.Pair;
+
+/**
+ * Writes point files with MappedPointFile and reads them back, and checks
+ * OutOfCoreClosestPair on such files against ArrayClosestPair.
+ */
+class MappedPointFileTest {
+
+    @TempDir
+    Path workDirectory;
+
+    @Test
+    void roundTripKeepsEveryBit() throws IOException {
+        double[] values = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, Double.MAX_VALUE, -1.5, Math.PI};
+        PointStore store = new PointStore();
+        for (double x : values) {
+            for (double y : values) {
+                store.add(x, y);
+            }
+        }
+        Path file = workDirectory.resolve("points.bin");
+        MappedPointFile.write(file, store);
+        assertEquals(store.size() * (long) MappedPointFile.POINT_BYTES, Files.size(file));
+        try (MappedPointFile points = MappedPointFile.open(file)) {
+            assertEquals(store.size(), points.size());
+            for (int i = 0; i < store.size(); i++) {
+                assertBitsEqual(store.getX(i), points.getX(i));
+                assertBitsEqual(store.getY(i), points.getY(i));
+            }
+        }
+    }
+
+    /**
+     * More points than the buffer of the writer holds, so it is flushed
+     * several times, the last time with a partly filled buffer.
+     */
+    @Test
+    void writerFlushesAcrossBuffers() throws IOException {
+        Path file = workDirectory.resolve("many.bin");
+        int numPoints = 3 * 4096 + 17;
+        try (MappedPointFile.Writer writer = new MappedPointFile.Writer(file)) {
+            for (int i = 0; i < numPoints; i++) {
+                writer.append(i, -i);
+            }
+            assertEquals(numPoints, writer.size());
+        }
+        try (MappedPointFile points = MappedPointFile.open(file)) {
+            assertEquals(numPoints, points.size());
+            PointStore slice = points.read(4090, 20);
+            assertEquals(20, slice.size());
+            for (int i = 0; i < 20; i++) {
+                assertEquals(4090 + i, slice.getX(i));
+                assertEquals(-4090 - i, slice.getY(i));
+            }
+        }
+    }
+
+    @Test
+    void writerTruncatesExistingFile() throws IOException {
+        Path file = workDirectory.resolve("reused.bin");
+        try (MappedPointFile.Writer writer = new MappedPointFile.Writer(file)) {
+            for (int i = 0; i < 100; i++) {
+                writer.append(i, i);
+            }
+        }
+        try (MappedPointFile.Writer writer = new MappedPointFile.Writer(file)) {
+            writer.append(7, 8);
+        }
+        try (MappedPointFile points = MappedPointFile.open(file)) {
+            assertEquals(1, points.size());
+            assertEquals(7, points.getX(0));
+            assertEquals(8, points.getY(0));
+        }
+    }
+
+    @Test
+    void trailingPartialPointIsIgnored() throws IOException {
+        Path file = workDirectory.resolve("partial.bin");
+        MappedPointFile.write(file, store(1, 2, 3, 4));
+        Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+        try (MappedPointFile points = MappedPointFile.open(file)) {
+            assertEquals(2, points.size());
+            assertEquals(3, points.getX(1));
+            assertEquals(4, points.getY(1));
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path file = workDirectory.resolve("empty.bin");
+        MappedPointFile.write(file, new PointStore());
+        try (MappedPointFile points = MappedPointFile.open(file)) {
+            assertEquals(0, points.size());
+        }
+        assertNull(new OutOfCoreClosestPair(10, workDirectory).closestPair(file));
+    }
+
+    @ParameterizedTest
+    @EnumSource(PointGenerator.Distribution.class)
+    void outOfCoreMatchesArrayClosestPair(PointGenerator.Distribution distribution) throws IOException {
+        PointStore store = new PointGenerator(9).generate(distribution, 20_000);
+        Path file = workDirectory.resolve("generated.bin");
+        MappedPointFile.write(file, store);
+        Pair expected = new ArrayClosestPair().closestPair(store);
+        Pair actual = new OutOfCoreClosestPair(1000, workDirectory).closestPair(file);
+        assertEquals(expected.getDistance(), actual.getDistance());
+        assertEquals(expected.getDistance(), ClosestPair.distance(actual.getPoint1(), actual.getPoint2()));
+        // The slab files are gone, only the input is left
+        try (Stream<Path> files = Files.list(workDirectory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    /**
+     * The points are 1 apart in x except for one pair 0.001 apart around an
+     * integer x, which is moved along the line. Wherever a sampled slab
+     * boundary splits the pair, only the carried points find it.
+     */
+    @Test
+    void outOfCoreFindsPairsAcrossSlabs() throws IOException {
+        Path file = workDirectory.resolve("line.bin");
+        for (int split = 100; split < 5000; split += 977) {
+            PointStore points = new PointStore();
+            for (int i = 0; i < 5000; i++) {
+                points.add(i, (i % 2) * 10.0);
+            }
+            points.add(split - 0.0005, 5);
+            points.add(split + 0.0005, 5);
+            MappedPointFile.write(file, points);
+            Pair pair = new OutOfCoreClosestPair(100, workDirectory).closestPair(file);
+            assertEquals(new ArrayClosestPair().closestPair(points).getDistance(), pair.getDistance());
+        }
+    }
+
+    private static void assertBitsEqual(double expected, double actual) {
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+
+    private static PointStore store(double... coordinates) {
+        PointStore store = new PointStore();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            store.add(coordinates[i], coordinates[i + 1]);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,150 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks PairQueries against the distances of all the pairs, computed with
+ * ClosestPair.distance.
+ */
+class PairQueriesTest {
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0, 0.5, 1, 2.5, 10, 100})
+    void pairsWithinMatchesAllPairs(double radius) {
+        Random random = new Random(8);
+        for (int trial = 0; trial < 20; trial++) {
+            // Small integer coordinates make duplicates and pairs exactly at
+            // the radius common
+            PointStore store = randomStore(random, 2 + random.nextInt(200), 20);
+            PairList pairs = PairQueries.pairsWithin(store, radius);
+            Set<Long> expected = new HashSet<>();
+            for (int i = 0; i < store.size(); i++) {
+                for (int j = 0; j < i; j++) {
+                    if (distance(store, i, j) <= radius) {
+                        expected.add(pack(i, j));
+                    }
+                }
+            }
+            Set<Long> actual = new HashSet<>();
+            for (int i = 0; i < pairs.size(); i++) {
+                int first = pairs.getFirst(i);
+                int second = pairs.getSecond(i);
+                assertTrue(second < first, "the smaller index comes second");
+                assertEquals(distance(store, first, second), pairs.getDistance(i));
+                assertTrue(actual.add(pack(first, second)), "every pair is reported once");
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void pairsWithinNegativeOrNaNRadius() {
+        PointStore store = store(0, 0, 0, 0, 1, 1);
+        assertEquals(0, PairQueries.pairsWithin(store, -1).size());
+        assertEquals(0, PairQueries.pairsWithin(store, Double.NaN).size());
+    }
+
+    @Test
+    void pairsWithinZeroRadiusFindsEqualPoints() {
+        PointStore store = store(1, 2, 3, 4, 1, 2, -0.0, 5, 0.0, 5, 1, 2);
+        PairList pairs = PairQueries.pairsWithin(store, 0);
+        Set<Long> actual = new HashSet<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            actual.add(pack(pairs.getFirst(i), pairs.getSecond(i)));
+        }
+        assertEquals(Set.of(pack(2, 0), pack(5, 0), pack(5, 2), pack(4, 3)), actual);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 5, 50, 500})
+    void kClosestPairsMatchesAllPairs(int k) {
+        Random random = new Random(k);
+        for (int trial = 0; trial < 20; trial++) {
+            int range = trial % 2 == 0 ? 10 : 1_000_000;
+            PointStore store = randomStore(random, 2 + random.nextInt(150), range);
+            List<Double> all = new ArrayList<>();
+            for (int i = 0; i < store.size(); i++) {
+                for (int j = 0; j < i; j++) {
+                    all.add(distance(store, i, j));
+                }
+            }
+            all.sort(null);
+            PairList pairs = PairQueries.kClosestPairs(store, k);
+            assertEquals(Math.min(k, all.size()), pairs.size());
+            double[] expected = new double[pairs.size()];
+            double[] actual = new double[pairs.size()];
+            for (int i = 0; i < pairs.size(); i++) {
+                expected[i] = all.get(i);
+                actual[i] = pairs.getDistance(i);
+                assertEquals(distance(store, pairs.getFirst(i), pairs.getSecond(i)), actual[i]);
+            }
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void kClosestPairsOfFewPoints() {
+        assertEquals(0, PairQueries.kClosestPairs(new PointStore(), 3).size());
+        assertEquals(0, PairQueries.kClosestPairs(store(1, 1), 3).size());
+        assertEquals(0, PairQueries.kClosestPairs(store(1, 1, 2, 2), 0).size());
+        // Only three pairs exist
+        assertEquals(3, PairQueries.kClosestPairs(store(0, 0, 3, 0, 0, 4), 10).size());
+    }
+
+    @Test
+    void kClosestPairsOfEqualPoints() {
+        PointStore store = store(7, 7, 7, 7, 7, 7, 7, 7, 100, 100);
+        PairList pairs = PairQueries.kClosestPairs(store, 7);
+        assertEquals(7, pairs.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(0, pairs.getDistance(i));
+        }
+        assertEquals(ClosestPair.hypot(93, 93), pairs.getDistance(6));
+    }
+
+    @Test
+    void acceptsLists() {
+        List<Point> points = Arrays.asList(new Point(0, 0), new Point(0, 1), new Point(5, 5));
+        assertEquals(1, PairQueries.pairsWithin(points, 1).size());
+        assertEquals(1, PairQueries.kClosestPairs(points, 1).getDistance(0));
+    }
+
+    private static double distance(PointStore store, int i, int j) {
+        return ClosestPair.distance(store.getPoint(i), store.getPoint(j));
+    }
+
+    private static long pack(int first, int second) {
+        return ((long) first << 32) | second;
+    }
+
+    private static PointStore randomStore(Random random, int numPoints, int range) {
+        PointStore store = new PointStore();
+        for (int i = 0; i < numPoints; i++) {
+            store.add(random.nextInt(range), random.nextInt(range));
+        }
+        return store;
+    }
+
+    private static PointStore store(double... coordinates) {
+        PointStore store = new PointStore();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            store.add(coordinates[i], coordinates[i + 1]);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,124 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks that PointGenerator is reproducible even though it fills its chunks
+ * in parallel, and that every distribution has the shape it promises.
+ */
+class PointGeneratorTest {
+
+    // Several chunks, the last one partly filled
+    private static final int NUM_POINTS = 3 * PointGenerator.CHUNK_SIZE + 1000;
+
+    @ParameterizedTest
+    @EnumSource(PointGenerator.Distribution.class)
+    void sameSeedGivesSamePoints(PointGenerator.Distribution distribution) {
+        PointStore first = new PointGenerator(14).generate(distribution, NUM_POINTS);
+        for (int run = 0; run < 3; run++) {
+            PointStore again = new PointGenerator(14).generate(distribution, NUM_POINTS);
+            assertArrayEquals(first.xs, again.xs);
+            assertArrayEquals(first.ys, again.ys);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = PointGenerator.Distribution.class, names = "LATTICE", mode = EnumSource.Mode.EXCLUDE)
+    void otherSeedGivesOtherPoints(PointGenerator.Distribution distribution) {
+        PointStore first = new PointGenerator(14).generate(distribution, 1000);
+        PointStore other = new PointGenerator(15).generate(distribution, 1000);
+        assertFalse(Arrays.equals(first.xs, other.xs) && Arrays.equals(first.ys, other.ys));
+    }
+
+    @ParameterizedTest
+    @EnumSource(PointGenerator.Distribution.class)
+    void generatePointsMatchesGenerate(PointGenerator.Distribution distribution) {
+        PointGenerator generator = new PointGenerator(41);
+        PointStore store = generator.generate(distribution, NUM_POINTS);
+        List<Point> points = generator.generatePoints(distribution, NUM_POINTS);
+        assertEquals(NUM_POINTS, points.size());
+        for (int i = 0; i < NUM_POINTS; i++) {
+            assertEquals(store.getPoint(i), points.get(i));
+        }
+    }
+
+    @Test
+    void uniformIsInUnitSquare() {
+        PointStore store = new PointGenerator(1).generate(PointGenerator.Distribution.UNIFORM, NUM_POINTS);
+        for (int i = 0; i < store.size(); i++) {
+            assertTrue(store.getX(i) >= 0 && store.getX(i) < 1);
+            assertTrue(store.getY(i) >= 0 && store.getY(i) < 1);
+        }
+    }
+
+    @Test
+    void lineIsVertical() {
+        PointStore store = new PointGenerator(2).generate(PointGenerator.Distribution.LINE, NUM_POINTS);
+        for (int i = 0; i < store.size(); i++) {
+            assertEquals(0.5, store.getX(i));
+        }
+    }
+
+    @Test
+    void circleHasRadiusOneHalf() {
+        PointStore store = new PointGenerator(3).generate(PointGenerator.Distribution.CIRCLE, NUM_POINTS);
+        for (int i = 0; i < store.size(); i++) {
+            assertEquals(0.5, Math.hypot(store.getX(i) - 0.5, store.getY(i) - 0.5), 1e-12);
+        }
+    }
+
+    @Test
+    void duplicatesRepeatPoints() {
+        PointStore store = new PointGenerator(4).generate(PointGenerator.Distribution.DUPLICATES, NUM_POINTS);
+        // Point has no hashCode, so the coordinates are the keys
+        Set<List<Double>> distinct = new HashSet<>();
+        for (int i = 0; i < store.size(); i++) {
+            distinct.add(List.of(store.getX(i), store.getY(i)));
+        }
+        assertTrue(distinct.size() <= NUM_POINTS / 8, () -> distinct.size() + " distinct points");
+    }
+
+    @Test
+    void latticeFillsRows() {
+        PointStore store = new PointGenerator(5).generate(PointGenerator.Distribution.LATTICE, 10);
+        // A side of ceil(sqrt(10)) = 4
+        assertEquals(new Point(0, 0), store.getPoint(0));
+        assertEquals(new Point(3, 0), store.getPoint(3));
+        assertEquals(new Point(0, 1), store.getPoint(4));
+        assertEquals(new Point(1, 2), store.getPoint(9));
+    }
+
+    @Test
+    void hugeAndTinyAreScaled() {
+        double twoPow450 = Math.scalb(1.0, 450);
+        PointStore huge = new PointGenerator(6).generate(PointGenerator.Distribution.HUGE, 1000);
+        PointStore tiny = new PointGenerator(6).generate(PointGenerator.Distribution.TINY, 1000);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(huge.getX(i) >= 0 && huge.getX(i) < 4 * twoPow450);
+            assertTrue(huge.getY(i) >= 0 && huge.getY(i) < 4 * twoPow450);
+            assertTrue(tiny.getX(i) >= 0 && tiny.getX(i) < 4 / twoPow450);
+            assertTrue(tiny.getY(i) >= 0 && tiny.getY(i) < 4 / twoPow450);
+        }
+    }
+
+    @Test
+    void zeroPoints() {
+        for (PointGenerator.Distribution distribution : PointGenerator.Distribution.values()) {
+            assertEquals(0, new PointGenerator(7).generate(distribution, 0).size());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks PresortedClosestPair against ClosestPair.bruteForce and
+ * ArrayClosestPair, especially on points that share an x coordinate with the
+ * median and on equal points that have to be divided between the halves.
+ */
+class PresortedClosestPairTest {
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(12);
+        PresortedClosestPair engine = new PresortedClosestPair();
+        for (int trial = 0; trial < 500; trial++) {
+            List<Point> points = new ArrayList<>();
+            int numPoints = 2 + random.nextInt(200);
+            int range = trial % 3 == 0 ? 5 : 1000;
+            for (int i = 0; i < numPoints; i++) {
+                points.add(new Point(random.nextInt(range), random.nextInt(range)));
+            }
+            assertSameDistance(engine, points);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PointGenerator.Distribution.class)
+    void matchesArrayClosestPair(PointGenerator.Distribution distribution) {
+        PointStore store = new PointGenerator(12).generate(distribution, 20_000);
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            points.add(store.getPoint(i));
+        }
+        Pair pair = new PresortedClosestPair().initializeDivideAndConquer(points);
+        assertEquals(new ArrayClosestPair().closestPair(store).getDistance(), pair.getDistance());
+    }
+
+    /**
+     * Every point has the same x, so only the y order divides them.
+     */
+    @Test
+    void verticalLine() {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(new Point(3, i * 2.0));
+        }
+        points.add(new Point(3, 777.5));
+        assertEquals(0.5, new PresortedClosestPair().initializeDivideAndConquer(points).getDistance());
+    }
+
+    /**
+     * Copies of one point that end up on both sides of the median.
+     */
+    @Test
+    void equalPointsAtTheMedian() {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            points.add(new Point(i, 0));
+            points.add(new Point(25, 100 + i * 3.0));
+        }
+        points.add(new Point(25, 130));
+        Pair pair = new PresortedClosestPair().initializeDivideAndConquer(points);
+        assertEquals(0, pair.getDistance());
+        assertEquals(new Point(25, 130), pair.getPoint1());
+    }
+
+    @Test
+    void lessThanTwoPoints() {
+        PresortedClosestPair engine = new PresortedClosestPair();
+        assertNull(engine.initializeDivideAndConquer(new ArrayList<>()));
+        assertNull(engine.initializeDivideAndConquer(new ArrayList<>(List.of(new Point(1, 1)))));
+    }
+
+    @Test
+    void overflowingAndUnderflowingDistances() {
+        PresortedClosestPair engine = new PresortedClosestPair();
+        assertSameDistance(engine, List.of(new Point(0, 0), new Point(1e200, 0), new Point(0, 3e190),
+                new Point(-1e250, 1e250)));
+        assertSameDistance(engine, List.of(new Point(0, 0), new Point(3e-170, 0), new Point(1e-170, 0),
+                new Point(5, 5)));
+    }
+
+    @Test
+    void solveReturnsIndices() {
+        double[] xs = {9, 0, 4, 100, 4.5};
+        double[] ys = {9, 0, 4, 100, 4};
+        IndexPair pair = PresortedClosestPair.solve(xs, ys, new int[] {3, 2, 0, 4, 1}, 5);
+        assertEquals(0.5, pair.getDistance());
+        assertEquals(2 + 4, pair.getFirst() + pair.getSecond());
+        // Only the first count indices take part
+        pair = PresortedClosestPair.solve(xs, ys, new int[] {3, 0, 1, 2, 4}, 3);
+        assertEquals(ClosestPair.hypot(9, 9), pair.getDistance());
+    }
+
+    private static void assertSameDistance(PresortedClosestPair engine, List<Point> points) {
+        double expected = ClosestPair.bruteForce(new ArrayList<>(points)).getDistance();
+        Pair pair = engine.initializeDivideAndConquer(new ArrayList<>(points));
+        assertEquals(expected, pair.getDistance());
+        assertEquals(expected, ClosestPair.distance(pair.getPoint1(), pair.getPoint2()));
+    }
+}
@@ -0,0 +1,182 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks QuantizedClosestPair against a nested loop over the lattice points
+ * with long squared distances, including which of several pairs at the
+ * closest distance it reports: the smallest first index, then the smallest
+ * second index.
+ */
+class QuantizedClosestPairTest {
+
+    @Test
+    void matchesNestedLoopWithTies() {
+        Random random = new Random(22);
+        QuantizedClosestPair engine = new QuantizedClosestPair(1);
+        for (int trial = 0; trial < 1000; trial++) {
+            QuantizedPointStore store = new QuantizedPointStore(1);
+            int numPoints = 2 + random.nextInt(10 * QuantizedClosestPair.LEAF_SIZE);
+            // From a few lattice points, so ties and duplicates are common,
+            // to many, so most pairs are distinct
+            int range = 2 + random.nextInt(trial % 2 == 0 ? 10 : 100_000);
+            for (int i = 0; i < numPoints; i++) {
+                store.add(random.nextInt(range) - range / 2, random.nextInt(range) - range / 2);
+            }
+            assertFirstClosestPair(engine, store);
+        }
+    }
+
+    /**
+     * The copies of (5, 5) come before those of (1, 1), but (1, 1) has the
+     * smaller first index.
+     */
+    @Test
+    void firstPairOfEqualPoints() {
+        QuantizedPointStore store = store(9, 9, 1, 1, 5, 5, 5, 5, 1, 1, 1, 1, 7, 0);
+        IndexPair pair = new QuantizedClosestPair(1).closestIndexPair(store);
+        assertEquals(1, pair.getFirst());
+        assertEquals(4, pair.getSecond());
+        assertEquals(0, pair.getDistance());
+    }
+
+    /**
+     * Many copies of one point and one earlier pair of copies of another: the
+     * early pair wins although the later point has far more pairs.
+     */
+    @Test
+    void firstPairOfEqualPointsAmongManyCopies() {
+        QuantizedPointStore store = new QuantizedPointStore(1);
+        store.add(3, 3);
+        for (int i = 0; i < 1000; i++) {
+            store.add(8, 8);
+        }
+        store.add(3, 3);
+        IndexPair pair = new QuantizedClosestPair(1).closestIndexPair(store);
+        assertEquals(0, pair.getFirst());
+        assertEquals(1001, pair.getSecond());
+
+        store = new QuantizedPointStore(1);
+        for (int i = 0; i < 1000; i++) {
+            store.add(8, 8);
+        }
+        pair = new QuantizedClosestPair(1).closestIndexPair(store);
+        assertEquals(0, pair.getFirst());
+        assertEquals(1, pair.getSecond());
+    }
+
+    @Test
+    void distanceInUnitsOfScale() {
+        QuantizedPointStore store = new QuantizedPointStore(0.25);
+        store.add(0.0, 0.0);
+        store.add(0.75, 1.0);
+        store.add(10.0, 10.0);
+        QuantizedClosestPair engine = new QuantizedClosestPair(0.25);
+        IndexPair pair = engine.closestIndexPair(store);
+        // 3 and 4 steps
+        assertEquals(25, engine.getDistanceSquared());
+        assertEquals(1.25, pair.getDistance());
+        Pair points = engine.closestPair(store);
+        assertEquals(new Point(0, 0), points.getPoint1());
+        assertEquals(new Point(0.75, 1), points.getPoint2());
+    }
+
+    /**
+     * The farthest apart lattice points: their squared distance still fits
+     * in a long.
+     */
+    @Test
+    void cornersOfTheLattice() {
+        int max = QuantizedPointStore.MAX_COORDINATE;
+        QuantizedPointStore store = store(-max, -max, max, max);
+        QuantizedClosestPair engine = new QuantizedClosestPair(1);
+        engine.closestIndexPair(store);
+        long side = 2L * max;
+        assertEquals(2 * side * side, engine.getDistanceSquared());
+    }
+
+    @Test
+    void rejectsPointsOffTheLattice() {
+        QuantizedPointStore store = new QuantizedPointStore(1);
+        assertThrows(IllegalArgumentException.class, () -> store.add(QuantizedPointStore.MAX_COORDINATE + 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> store.add(0, -QuantizedPointStore.MAX_COORDINATE - 1));
+        assertThrows(IllegalArgumentException.class, () -> store.add(1e10, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> store.add(Double.NaN, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> new QuantizedPointStore(0));
+        assertThrows(IllegalArgumentException.class, () -> new QuantizedPointStore(Double.POSITIVE_INFINITY));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void quantizeRoundsToNearestStep() {
+        PointStore points = new PointStore();
+        points.add(0.26, -0.24);
+        points.add(1.1, 0.9);
+        QuantizedPointStore store = QuantizedPointStore.quantize(points, 0.5);
+        assertEquals(1, store.getQuantizedX(0));
+        assertEquals(0, store.getQuantizedY(0));
+        assertEquals(1.0, store.getX(1));
+        assertEquals(1.0, store.getY(1));
+    }
+
+    @Test
+    void listsAreQuantizedWithTheScale() {
+        List<Point> points = new ArrayList<>(List.of(new Point(0.1, 0), new Point(5, 5), new Point(0.9, 0.2),
+                new Point(0.2, 1.1)));
+        // On a lattice of step 1 the first, third and fourth points are
+        // (0, 0), (1, 0) and (0, 1): the first pair at distance 1 is 0 and 2
+        Pair pair = new QuantizedClosestPair(1).initializeDivideAndConquer(points);
+        assertEquals(new Point(0.1, 0), pair.getPoint1());
+        assertEquals(new Point(0.9, 0.2), pair.getPoint2());
+    }
+
+    @Test
+    void lessThanTwoPoints() {
+        QuantizedClosestPair engine = new QuantizedClosestPair(1);
+        QuantizedPointStore store = new QuantizedPointStore(1);
+        assertNull(engine.closestIndexPair(store));
+        store.add(1, 1);
+        assertNull(engine.closestPair(store));
+    }
+
+    private static void assertFirstClosestPair(QuantizedClosestPair engine, QuantizedPointStore store) {
+        long best = Long.MAX_VALUE;
+        int bestFirst = -1;
+        int bestSecond = -1;
+        for (int i = 0; i < store.size(); i++) {
+            for (int j = i + 1; j < store.size(); j++) {
+                long dx = store.getQuantizedX(j) - (long) store.getQuantizedX(i);
+                long dy = store.getQuantizedY(j) - (long) store.getQuantizedY(i);
+                // Strictly smaller, so the first pair in (i, j) order stays
+                if (dx * dx + dy * dy < best) {
+                    best = dx * dx + dy * dy;
+                    bestFirst = i;
+                    bestSecond = j;
+                }
+            }
+        }
+        IndexPair pair = engine.closestIndexPair(store);
+        assertEquals(best, engine.getDistanceSquared());
+        assertEquals(bestFirst, pair.getFirst());
+        assertEquals(bestSecond, pair.getSecond());
+    }
+
+    private static QuantizedPointStore store(int... coordinates) {
+        QuantizedPointStore store = new QuantizedPointStore(1);
+        for (int i = 0; i < coordinates.length; i += 2) {
+            store.add(coordinates[i], coordinates[i + 1]);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,107 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks RadixSort against List.sort with Double.compare, which orders -0.0
+ * before 0.0 and NaN after positive infinity and is stable, on lengths below
+ * and above the radix and parallel thresholds.
+ */
+class RadixSortTest {
+
+    private static final double[] SPECIAL = {
+        0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+        Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+        Double.MIN_NORMAL, -Double.MIN_NORMAL, 1, -1, 0.5, -0.5
+    };
+
+    @Test
+    void sortableBitsKeepsOrder() {
+        for (double a : SPECIAL) {
+            for (double b : SPECIAL) {
+                int expected = Integer.signum(Double.compare(a, b));
+                int actual = Integer.signum(Long.compareUnsigned(RadixSort.sortableBits(a), RadixSort.sortableBits(b)));
+                assertTrue(expected == actual, () -> a + " and " + b + " are out of order");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 15, 17, 1000, 1024, 5000, 200_000})
+    void sortByXMatchesStableSort(int numPoints) {
+        List<Point> points = randomPoints(new Random(numPoints), numPoints);
+        List<Point> expected = new ArrayList<>(points);
+        expected.sort(Comparator.comparingDouble(Point::getX));
+        List<Point> sorted = new ArrayList<>(points);
+        RadixSort.sortByX(sorted);
+        assertSameOrder(expected, sorted);
+        sorted = new ArrayList<>(points);
+        RadixSort.parallelSortByX(sorted);
+        assertSameOrder(expected, sorted);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 15, 17, 1000, 1024, 5000, 200_000})
+    void sortByYMatchesStableSort(int numPoints) {
+        List<Point> points = randomPoints(new Random(-numPoints), numPoints);
+        List<Point> expected = new ArrayList<>(points);
+        expected.sort(Comparator.comparingDouble(Point::getY));
+        List<Point> sorted = new ArrayList<>(points);
+        RadixSort.sortByY(sorted);
+        assertSameOrder(expected, sorted);
+        sorted = new ArrayList<>(points);
+        RadixSort.parallelSortByY(sorted);
+        assertSameOrder(expected, sorted);
+    }
+
+    @Test
+    void sortIndicesSortsOnlyTheRange() {
+        double[] coordinates = {3, -0.0, Double.NaN, 0.0, -7, 3, Double.NEGATIVE_INFINITY};
+        int[] indices = {6, 5, 4, 3, 2, 1, 0};
+        RadixSort.sortIndices(coordinates, indices, 1, 6);
+        // The range holds 3, -7, 0.0, NaN and -0.0; both ends stay put
+        assertArrayEquals(new int[] {6, 4, 1, 3, 5, 2, 0}, indices);
+    }
+
+    private static void assertSameOrder(List<Point> expected, List<Point> actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i), "position " + i);
+        }
+    }
+
+    /**
+     * Few distinct coordinates, so equal keys are common and stability
+     * matters, mixed with the special values and a wide spread of exponents.
+     */
+    private static List<Point> randomPoints(Random random, int numPoints) {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < numPoints; i++) {
+            points.add(new Point(coordinate(random), coordinate(random)));
+        }
+        return points;
+    }
+
+    private static double coordinate(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return SPECIAL[random.nextInt(SPECIAL.length)];
+            case 1:
+                return random.nextInt(20) - 10;
+            default:
+                return (random.nextDouble() - 0.5) * Math.pow(2, random.nextInt(200) - 100);
+        }
+    }
+}
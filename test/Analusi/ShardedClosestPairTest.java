@@ -0,0 +1,102 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import Analusi.ClosestPair.Pair;
+
+/**
+ * Runs ShardedClosestPair against real ShardWorker processes started with
+ * launchLocal and compares its results with ArrayClosestPair.
+ */
+class ShardedClosestPairTest {
+
+    private static final int NUM_WORKERS = 3;
+
+    private static ShardedClosestPair sharded;
+
+    @BeforeAll
+    static void launchWorkers() throws IOException {
+        sharded = ShardedClosestPair.launchLocal(NUM_WORKERS);
+    }
+
+    @AfterAll
+    static void shutDownWorkers() throws IOException {
+        if (sharded != null) {
+            sharded.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PointGenerator.Distribution.class)
+    void matchesArrayClosestPair(PointGenerator.Distribution distribution) throws IOException {
+        PointStore store = new PointGenerator(1969).generate(distribution, 30_000);
+        assertSameDistance(store);
+    }
+
+    /**
+     * Fewer points than two per worker, so some workers get no slab.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 5, 7})
+    void matchesArrayClosestPairOnFewPoints(int numPoints) throws IOException {
+        PointStore store = new PointGenerator(numPoints).generate(PointGenerator.Distribution.UNIFORM, numPoints);
+        assertSameDistance(store);
+    }
+
+    /**
+     * The closest pair crosses the boundary between the first two slabs, so
+     * only the strip solved by the coordinator finds it.
+     */
+    @Test
+    void findsPairAcrossSlabs() throws IOException {
+        PointStore store = new PointStore();
+        for (int i = 0; i < 3000; i++) {
+            store.add(i, (i % 2) * 10.0);
+        }
+        // With 3002 points the first slab ends at position 999 of the x
+        // order, which is 998.9999; 999.0001 is at position 1001
+        store.add(998.9999, 5);
+        store.add(999.0001, 5);
+        assertSameDistance(store);
+    }
+
+    @Test
+    void lessThanTwoPoints() throws IOException {
+        PointStore store = new PointStore();
+        assertNull(sharded.closestPair(store));
+        store.add(1, 2);
+        assertNull(sharded.closestPair(store));
+    }
+
+    /**
+     * A worker JVM that waits for a debugger never prints its port; the
+     * launch has to give up instead of waiting for it forever.
+     */
+    @Test
+    void launchTimesOutOnWorkerThatDoesNotStart() {
+        String suspended = "-agentlib:jdwp=transport=dt_socket,server=y,suspend=y,address=127.0.0.1:0,quiet=y";
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            assertThrows(IOException.class, () -> ShardedClosestPair.launchLocal(2, 1000, suspended));
+        });
+    }
+
+    private static void assertSameDistance(PointStore store) throws IOException {
+        Pair expected = new ArrayClosestPair().closestPair(store);
+        Pair actual = sharded.closestPair(store);
+        assertEquals(expected.getDistance(), actual.getDistance());
+        assertEquals(expected.getDistance(), ClosestPair.distance(actual.getPoint1(), actual.getPoint2()));
+    }
+}
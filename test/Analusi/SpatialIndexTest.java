@@ -0,0 +1,120 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks the queries of SpatialIndex against linear scans of the indexed
+ * points, with ClosestPair.distance as the measure.
+ */
+class SpatialIndexTest {
+
+    @Test
+    void nearestMatchesLinearScan() {
+        Random random = new Random(16);
+        PointStore store = new PointStore();
+        for (int i = 0; i < 2000; i++) {
+            store.add(random.nextInt(1000), random.nextInt(1000));
+        }
+        SpatialIndex index = new SpatialIndex(store);
+        for (int query = 0; query < 500; query++) {
+            Point point = new Point(random.nextDouble() * 1200 - 100, random.nextDouble() * 1200 - 100);
+            int nearest = index.nearest(point.getX(), point.getY());
+            assertEquals(nearestDistance(store, point), ClosestPair.distance(point, store.getPoint(nearest)));
+        }
+    }
+
+    @Test
+    void emptyIndex() {
+        SpatialIndex index = new SpatialIndex(new PointStore());
+        assertEquals(-1, index.nearest(0, 0));
+        assertNull(index.closestPairInBox(-1, -1, 1, 1));
+    }
+
+    /**
+     * The squares of the distances to every point overflow.
+     */
+    @Test
+    void nearestWithOverflowingSquares() {
+        PointStore store = store(0, 0, 1, 1, -3, 2, 5e199, 0, 5e299, 0);
+        SpatialIndex index = new SpatialIndex(store);
+        assertEquals(3, index.nearest(1e200, 1e200));
+        assertEquals(4, index.nearest(1e300, 1e300));
+        // Every point is infinitely far away
+        index = new SpatialIndex(store(Double.MAX_VALUE, Double.MAX_VALUE));
+        assertEquals(0, index.nearest(-Double.MAX_VALUE, -Double.MAX_VALUE));
+    }
+
+    /**
+     * The squares of the distances to the first two points underflow to 0.
+     */
+    @Test
+    void nearestWithUnderflowingSquares() {
+        SpatialIndex index = new SpatialIndex(store(3e-170, 0, 1e-170, 0, 1, 1));
+        assertEquals(1, index.nearest(0, 0));
+        assertEquals(0, index.nearest(4e-170, 0));
+    }
+
+    @Test
+    void closestPairInBoxMatchesBruteForce() {
+        Random random = new Random(61);
+        PointStore store = new PointStore();
+        for (int i = 0; i < 3000; i++) {
+            store.add(random.nextDouble() * 100, random.nextDouble() * 100);
+        }
+        SpatialIndex index = new SpatialIndex(store);
+        for (int query = 0; query < 50; query++) {
+            double minX = random.nextDouble() * 100;
+            double minY = random.nextDouble() * 100;
+            double maxX = minX + random.nextDouble() * 30;
+            double maxY = minY + random.nextDouble() * 30;
+            List<Point> inBox = new ArrayList<>();
+            for (int i = 0; i < store.size(); i++) {
+                Point point = store.getPoint(i);
+                if (point.getX() >= minX && point.getX() <= maxX && point.getY() >= minY && point.getY() <= maxY) {
+                    inBox.add(point);
+                }
+            }
+            IndexPair pair = index.closestPairInBox(minX, minY, maxX, maxY);
+            if (inBox.size() < 2) {
+                assertNull(pair);
+            } else {
+                assertEquals(ClosestPair.bruteForce(inBox).getDistance(), pair.getDistance());
+            }
+        }
+    }
+
+    @Test
+    void closestPairOfSubset() {
+        PointStore store = store(0, 0, 10, 10, 0.5, 0, 10, 10.25, 3, 3);
+        SpatialIndex index = new SpatialIndex(store);
+        IndexPair pair = index.closestPair(new int[] {4, 1, 0, 3});
+        assertEquals(0.25, pair.getDistance());
+        assertEquals(0.5, index.closestPair(new int[] {0, 2, 4}).getDistance());
+        assertNull(index.closestPair(new int[] {2}));
+    }
+
+    private static double nearestDistance(PointStore store, Point point) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < store.size(); i++) {
+            best = Math.min(best, ClosestPair.distance(point, store.getPoint(i)));
+        }
+        return best;
+    }
+
+    private static PointStore store(double... coordinates) {
+        PointStore store = new PointStore();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            store.add(coordinates[i], coordinates[i + 1]);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,196 @@
+package Analusi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import Analusi.ClosestPair.Pair;
+import Analusi.ClosestPair.Point;
+
+/**
+ * Checks WarmStartClosestPair frame by frame against ArrayClosestPair, on
+ * motions that keep each of its paths busy: small moves that the insertion
+ * sort repairs, jumps that run out of its shift budget, points sharing an x
+ * that run out of the budget of the x sweep, and frames that also run out of
+ * the y sweep and go to BottomUpClosestPair.
+ */
+class WarmStartClosestPairTest {
+
+    private static final int NUM_POINTS = 5000;
+    private static final int FRAMES = 30;
+
+    @Test
+    void smallMoves() {
+        Random random = new Random(20);
+        PointStore frame = new PointGenerator(20).generate(PointGenerator.Distribution.UNIFORM, NUM_POINTS);
+        WarmStartClosestPair engine = new WarmStartClosestPair();
+        for (int step = 0; step < FRAMES; step++) {
+            assertSameDistance(engine, frame);
+            frame = move(frame, random, 1e-3);
+        }
+    }
+
+    /**
+     * Every frame moves the points across the whole square, far beyond what
+     * the insertion sort is allowed to shift.
+     */
+    @Test
+    void largeMoves() {
+        Random random = new Random(21);
+        WarmStartClosestPair engine = new WarmStartClosestPair();
+        for (int step = 0; step < FRAMES; step++) {
+            PointStore frame = new PointGenerator(step).generate(PointGenerator.Distribution.UNIFORM, NUM_POINTS);
+            assertSameDistance(engine, frame);
+            assertSameDistance(engine, move(frame, random, 1e-4));
+        }
+    }
+
+    /**
+     * Columns of points with the same x: the x sweep compares a whole column
+     * with every point and gives up, the y sweep does not.
+     */
+    @Test
+    void sharedX() {
+        Random random = new Random(22);
+        WarmStartClosestPair engine = new WarmStartClosestPair();
+        for (int step = 0; step < FRAMES; step++) {
+            PointStore frame = new PointStore();
+            for (int i = 0; i < NUM_POINTS; i++) {
+                frame.add(i % 5, random.nextDouble() * 1000);
+            }
+            assertSameDistance(engine, frame);
+        }
+    }
+
+    /**
+     * A lattice with few columns and rows: both sweeps run out of their
+     * budget, so every frame is solved by the fallback.
+     */
+    @Test
+    void sharedXAndY() {
+        Random random = new Random(23);
+        WarmStartClosestPair engine = new WarmStartClosestPair();
+        for (int step = 0; step < FRAMES; step++) {
+            PointStore frame = new PointStore();
+            double spacing = 1 + random.nextInt(3);
+            for (int i = 0; i < NUM_POINTS; i++) {
+                frame.add(spacing * random.nextInt(8), spacing * random.nextInt(8));
+            }
+            assertSameDistance(engine, frame);
+        }
+    }
+
+    @Test
+    void changingSizeStartsOver() {
+        Random random = new Random(24);
+        WarmStartClosestPair engine = new WarmStartClosestPair();
+        for (int numPoints : new int[] {100, 5000, 2, 3, 5000, 4999}) {
+            PointStore frame = new PointGenerator(numPoints).generate(PointGenerator.Distribution.CLUSTERED, numPoints);
+            assertSameDistance(engine, frame);
+            assertSameDistance(engine, move(frame, random, 1e-3));
+        }
+        PointStore frame = new PointGenerator(1).generate(PointGenerator.Distribution.CLUSTERED, 10);
+        assertSameDistance(engine, frame);
+        engine.reset();
+        assertSameDistance(engine, frame);
+    }
+
+    @Test
+    void listFramesReuseResult() {
+        WarmStartClosestPair engine = new WarmStartClosestPair();
+        List<Point> points = new ArrayList<>(List.of(new Point(0, 0), new Point(10, 0), new Point(0, 3)));
+        Pair first = engine.initializeDivideAndConquer(points);
+        assertEquals(3, first.getDistance());
+        points.set(1, new Point(1, 0));
+        Pair second = engine.initializeDivideAndConquer(points);
+        assertSame(first, second);
+        assertEquals(1, second.getDistance());
+        assertEquals(new Point(1, 0), second.getPoint2());
+    }
+
+    @Test
+    void lessThanTwoPoints() {
+        WarmStartClosestPair engine = new WarmStartClosestPair();
+        assertNull(engine.closestPair(new PointStore()));
+        assertNull(engine.initializeDivideAndConquer(List.of(new Point(1, 1))));
+    }
+
+    /**
+     * The last pair of the first frame moves so far apart that its squared
+     * distance overflows, and then the new close pair underflows.
+     */
+    @Test
+    void inexactSquaresBetweenFrames() {
+        WarmStartClosestPair engine = new WarmStartClosestPair();
+        assertSameDistance(engine, store(0, 0, 1, 0, 5, 5, 9, 9));
+        assertSameDistance(engine, store(0, 0, 1e200, 0, 0, 3e190, -1e250, 1e250));
+        assertSameDistance(engine, store(0, 0, 3e-170, 0, 1e-170, 0, 5, 5));
+    }
+
+    /**
+     * A reversed range of n points takes n(n - 1)/2 shifts: 136 for 17
+     * points, exactly the budget of 8 per point, and 153 for 18, which is 9
+     * past it.
+     */
+    @Test
+    void insertionSortBudget() {
+        assertEquals(8, WarmStartClosestPair.SORT_SHIFTS_PER_POINT);
+        for (int numPoints = 17; numPoints <= 18; numPoints++) {
+            double[] coordinates = new double[numPoints];
+            int[] indices = new int[numPoints];
+            for (int i = 0; i < numPoints; i++) {
+                coordinates[i] = numPoints - i;
+                indices[i] = i;
+            }
+            boolean sorted = WarmStartClosestPair.insertionSort(indices, new double[numPoints], coordinates, numPoints);
+            int[] expected = new int[numPoints];
+            for (int i = 0; i < numPoints; i++) {
+                expected[i] = numPoints - 1 - i;
+            }
+            if (numPoints == 17) {
+                assertTrue(sorted);
+                assertArrayEquals(expected, indices);
+            } else {
+                assertFalse(sorted);
+                // Still a permutation, for the radix sort
+                Arrays.sort(indices);
+                for (int i = 0; i < numPoints; i++) {
+                    assertEquals(i, indices[i]);
+                }
+            }
+        }
+    }
+
+    private static void assertSameDistance(WarmStartClosestPair engine, PointStore frame) {
+        Pair expected = new ArrayClosestPair().closestPair(frame);
+        Pair actual = engine.closestPair(frame);
+        assertEquals(expected.getDistance(), actual.getDistance());
+        assertEquals(expected.getDistance(), ClosestPair.distance(actual.getPoint1(), actual.getPoint2()));
+    }
+
+    private static PointStore move(PointStore frame, Random random, double step) {
+        PointStore moved = new PointStore(frame.size());
+        for (int i = 0; i < frame.size(); i++) {
+            moved.add(frame.getX(i) + (random.nextDouble() - 0.5) * step, frame.getY(i) + (random.nextDouble() - 0.5) * step);
+        }
+        return moved;
+    }
+
+    private static PointStore store(double... coordinates) {
+        PointStore store = new PointStore();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            store.add(coordinates[i], coordinates[i + 1]);
+        }
+        return store;
+    }
+}